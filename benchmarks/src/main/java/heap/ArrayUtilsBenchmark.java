@@ -0,0 +1,75 @@
+package heap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The ArrayUtilsBenchmark class measures sorting an array with mergeSort and loading a file with fileToArray,
+ * for each combination of size and input distribution. Scores are per array or per file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class ArrayUtilsBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "DUPLICATES"})
+    public Distribution distribution;
+
+    private int[] values;  // The generated input
+    private int[] scratch; // The array sorted by each invocation
+    private Path file;     // The input written as a text file
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        values = distribution.generate(size, 42);
+        scratch = new int[size];
+
+        StringBuilder text = new StringBuilder(size * 8);
+        for (int value : values)
+            text.append(value).append(' ');
+        file = Files.createTempFile("heap-benchmark-", ".txt");
+        Files.writeString(file, text);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        System.arraycopy(values, 0, scratch, 0, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int[] mergeSort() {
+        ArrayUtils.mergeSort(scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public int[] fileToArray() {
+        return ArrayUtils.fileToArray(file.toString());
+    }
+}
@@ -0,0 +1,42 @@
+package heap;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The BenchmarkMain class runs the benchmarks with the standard JMH command line,
+ * adding the GC profiler so that every result reports the allocation per operation (gc.alloc.rate.norm, in bytes)
+ * next to the throughput. Passing any -prof option replaces the default profiler.
+ */
+public class BenchmarkMain {
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args the JMH command line options, for example a benchmark name pattern or -p size=1000
+     * @throws CommandLineOptionException if the options are not valid
+     * @throws RunnerException if a benchmark cannot be run
+     * @throws IOException if the benchmark list cannot be read
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args); // Let JMH print the information
+            return;
+        }
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        if (commandLine.getProfilers().isEmpty())
+            builder.addProfiler(GCProfiler.class);
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,50 @@
+package heap;
+
+import java.util.SplittableRandom;
+
+/**
+ * The Distribution enum generates the input data of the benchmarks.
+ * The same distribution, size and seed always give the same values, so every implementation sees the same input.
+ */
+public enum Distribution {
+    /** Uniformly random ints. */
+    RANDOM,
+    /** Ascending values. */
+    SORTED,
+    /** Descending values. */
+    REVERSED,
+    /** Values from a small range with many duplicates, like the sample input files. */
+    DUPLICATES;
+
+    private static final int DUPLICATES_MIN = -10; // The range of the sample input files
+    private static final int DUPLICATES_MAX = 100;
+
+    /**
+     * Generates an array of values.
+     *
+     * @param n the number of values
+     * @param seed the seed of the random generator
+     * @return an array of n values following this distribution
+     */
+    public int[] generate(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            switch (this) {
+                case RANDOM:
+                    values[i] = random.nextInt();
+                    break;
+                case SORTED:
+                    values[i] = i;
+                    break;
+                case REVERSED:
+                    values[i] = n - i;
+                    break;
+                default:
+                    values[i] = random.nextInt(DUPLICATES_MIN, DUPLICATES_MAX + 1);
+                    break;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,238 @@
+package heap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The HeapBenchmark class measures every Heap operation on every implementation,
+ * for each combination of heap size and input distribution.
+ * <p>
+ * makeHeap, unionHeap and sortHeap are measured on whole heaps, so their scores are per heap.
+ * insert and extractMin are measured as OPS operations on a heap of the given size, and their scores are per operation.
+ * The heaps changed by a benchmark are rebuilt before every invocation, outside of the measurement.
+ * makeHeap may reorder its argument (SortedHeap sorts it in place), so every build works on a private copy
+ * of the generated input, refreshed before each invocation, and each build sees the chosen distribution.
+ * Implementations whose insert or extractMin is linear (SortedHeap and MinHeap) are slow at the largest sizes;
+ * use -p size=... to narrow the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class HeapBenchmark {
+    static final int OPS = 1000; // The number of inserts or extractions per invocation
+
+    /**
+     * The parameters of a run and the input generated from them.
+     */
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"MinHeap", "SortedHeap", "PairingHeap", "IntArrayHeap", "OffHeapIntHeap", "ConcurrentHeap", "RadixHeap"})
+        public String implementation;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        @Param({"RANDOM", "SORTED", "REVERSED", "DUPLICATES"})
+        public Distribution distribution;
+
+        int[] values; // The contents of the heap
+        int[] extra;  // The values inserted by the insert benchmark
+
+        @Setup(Level.Trial)
+        public void generate() {
+            values = distribution.generate(size, 42);
+            extra = distribution.generate(OPS, 43);
+        }
+
+        /**
+         * Creates an empty heap of the implementation under test.
+         *
+         * @return a new empty heap
+         */
+        Heap createHeap() {
+            switch (implementation) {
+                case "MinHeap":
+                    return new MinHeap();
+                case "SortedHeap":
+                    return new SortedHeap();
+                case "PairingHeap":
+                    return new PairingHeap();
+                case "IntArrayHeap":
+                    return new IntArrayHeap();
+                case "OffHeapIntHeap":
+                    return new OffHeapIntHeap();
+                case "ConcurrentHeap":
+                    return new ConcurrentHeap();
+                case "RadixHeap":
+                    return new RadixHeap();
+                default:
+                    throw new IllegalArgumentException("Unknown implementation: " + implementation);
+            }
+        }
+    }
+
+    /**
+     * A heap built once per trial, for the benchmarks that do not change it.
+     */
+    @State(Scope.Thread)
+    public static class BuiltHeap {
+        Heap heap;
+
+        @Setup(Level.Trial)
+        public void build(Input input) {
+            heap = input.createHeap();
+            heap.makeHeap(input.values.clone());
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws Exception {
+            closeHeap(heap);
+        }
+    }
+
+    /**
+     * A heap rebuilt before every invocation, for the benchmarks that change it.
+     */
+    @State(Scope.Thread)
+    public static class FreshHeap {
+        Heap heap;
+        int[] buffer; // The copy of the input the heap is built from
+
+        @Setup(Level.Trial)
+        public void create(Input input) {
+            heap = input.createHeap();
+            buffer = new int[input.size];
+        }
+
+        @Setup(Level.Invocation)
+        public void build(Input input) {
+            System.arraycopy(input.values, 0, buffer, 0, buffer.length);
+            heap.makeHeap(buffer);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws Exception {
+            closeHeap(heap);
+        }
+    }
+
+    /**
+     * Two heaps holding half of the input each, rebuilt before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class HeapPair {
+        Heap first;
+        Heap second;
+        int[] firstHalf;   // The copy of the first half of the input the first heap is built from
+        int[] secondHalf;  // The copy of the second half of the input the second heap is built from
+
+        @Setup(Level.Trial)
+        public void create(Input input) {
+            first = input.createHeap();
+            second = input.createHeap();
+            firstHalf = new int[input.size / 2];
+            secondHalf = new int[input.size - input.size / 2];
+        }
+
+        @Setup(Level.Invocation)
+        public void build(Input input) {
+            System.arraycopy(input.values, 0, firstHalf, 0, firstHalf.length);
+            System.arraycopy(input.values, firstHalf.length, secondHalf, 0, secondHalf.length);
+            first.makeHeap(firstHalf);
+            second.makeHeap(secondHalf);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws Exception {
+            closeHeap(first);
+            closeHeap(second);
+        }
+    }
+
+    /**
+     * A private copy of the input, restored before every invocation of the makeHeap benchmark.
+     */
+    @State(Scope.Thread)
+    public static class InputCopy {
+        int[] values;
+
+        @Setup(Level.Trial)
+        public void allocate(Input input) {
+            values = new int[input.size];
+        }
+
+        @Setup(Level.Invocation)
+        public void restore(Input input) {
+            System.arraycopy(input.values, 0, values, 0, values.length);
+        }
+    }
+
+    /**
+     * Releases the resources of a heap that holds any.
+     *
+     * @param heap the heap to be closed
+     * @throws Exception if the heap cannot be closed
+     */
+    static void closeHeap(Heap heap) throws Exception {
+        if (heap instanceof AutoCloseable)
+            ((AutoCloseable) heap).close();
+    }
+
+    @Benchmark
+    public Heap makeHeap(InputCopy copy, BuiltHeap built) {
+        built.heap.makeHeap(copy.values);
+        return built.heap;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Heap insert(Input input, FreshHeap fresh) {
+        Heap heap = fresh.heap;
+        for (int value : input.extra)
+            heap.insert(value);
+        return heap;
+    }
+
+    @Benchmark
+    public int getMinVal(BuiltHeap built) {
+        return built.heap.getMinVal();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void extractMin(FreshHeap fresh, Blackhole blackhole) {
+        Heap heap = fresh.heap;
+        for (int i = 0; i < OPS; i++)
+            blackhole.consume(heap.extractMin());
+    }
+
+    @Benchmark
+    public Heap unionHeap(HeapPair pair) {
+        pair.first.unionHeap(pair.second);
+        return pair.first;
+    }
+
+    @Benchmark
+    public void sortHeap(FreshHeap fresh, Blackhole blackhole) {
+        IntConsumer sink = blackhole::consume;
+        fresh.heap.sortHeap(sink);
+    }
+}
@@ -1,6 +1,18 @@
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * The ArrayUtils class provides utility methods for array manipulation,
@@ -8,102 +20,538 @@ import java.util.Scanner;
  */
 public class ArrayUtils {
 
+    private static final int INSERTION_SORT_THRESHOLD = 32; // Runs shorter than this are extended with insertion sort
+    private static final int PARALLEL_THRESHOLD = 1 << 17;  // Arrays at least this long are sorted in parallel
+    private static final int PARALLEL_LEAF_SIZE = 1 << 15;  // Parallel tasks sort parts up to this long sequentially
+    private static final long MIN_CHUNK_SIZE = 1 << 20;     // Files are parsed in chunks of at least 1 MB
+    private static final long MAX_CHUNK_SIZE = 1 << 30;     // and at most 1 GB, which can be mapped at once
+    private static final int READ_BUFFER_SIZE = 1 << 16;    // Streams are read 64 KB at a time
+    private static final long OUT_OF_RANGE = Integer.MAX_VALUE + 2L; // Parsed values are clamped here, beyond any int
+    private static final byte[] MIN_VALUE_BYTES = Integer.toString(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final int[] WHITESPACE = new int[256];   // 1 for each whitespace byte, so tokens count without branches
+
+    static {
+        for (int c = 0; c < WHITESPACE.length; c++)
+            WHITESPACE[c] = isWhitespace((byte) c) ? 1 : 0;
+    }
+
     /**
-     * Sorts the given array using merge sort.
+     * Sorts the given array using a stable merge sort.
+     * Already sorted runs in the input are detected and kept, and large arrays are sorted in parallel.
      *
      * @param arr the array to be sorted
      */
     public static void mergeSort(int[] arr) {
-        mergeSort(arr, arr.length);
+        mergeSort(arr, 0, arr.length);
+    }
+
+    /**
+     * Sorts the specified range of the given array using a stable merge sort.
+     * The sort allocates a single buffer for the whole range.
+     *
+     * @param arr the array to be sorted
+     * @param from the index of the first element to be sorted, inclusive
+     * @param to the index of the last element to be sorted, exclusive
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     */
+    public static void mergeSort(int[] arr, int from, int to) {
+        Objects.checkFromToIndex(from, to, arr.length);
+        int n = to - from;
+        if (n < 2)
+            return;
+
+        int[] buf = new int[n]; // Element i of the range uses buf[i - from]
+        if (n >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1)
+            ForkJoinPool.commonPool().invoke(new SortTask(arr, from, to, buf, from));
+        else
+            sequentialSort(arr, from, to, buf, from);
     }
 
     /**
-     * Helper method that performs merge sort on a subset of the array.
+     * Sorts a range of an array with a bottom-up natural merge sort.
+     * The range is split into ascending runs, short runs are extended with insertion sort,
+     * and adjacent runs are merged pairwise until one run is left.
      *
      * @param a the array to be sorted
-     * @param n the number of elements to be sorted
+     * @param lo the index of the first element to be sorted, inclusive
+     * @param hi the index of the last element to be sorted, exclusive
+     * @param buf the merge buffer
+     * @param off the index in the array that corresponds to the start of the buffer
+     */
+    private static void sequentialSort(int[] a, int lo, int hi, int[] buf, int off) {
+        if (hi - lo <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(a, lo, lo + 1, hi);
+            return;
+        }
+
+        // Find the runs, each one at least INSERTION_SORT_THRESHOLD long except the last
+        int[] runs = new int[(hi - lo) / INSERTION_SORT_THRESHOLD + 2]; // The run boundaries
+        int count = 0;
+        runs[count++] = lo;
+        for (int i = lo; i < hi; ) {
+            int end = runEnd(a, i, hi);
+            if (end - i < INSERTION_SORT_THRESHOLD) { // Extend a short run
+                int forced = Math.min(i + INSERTION_SORT_THRESHOLD, hi);
+                insertionSort(a, i, end, forced);
+                end = forced;
+            }
+            runs[count++] = end;
+            i = end;
+        }
+
+        // Merge adjacent runs until a single run is left
+        while (count > 2) {
+            int k = 1;
+            for (int r = 2; r < count; r += 2) {
+                merge(a, runs[r - 2], runs[r - 1], runs[r], buf, off);
+                runs[k++] = runs[r];
+            }
+            if (count % 2 == 0) // An odd number of runs leaves the last one for the next pass
+                runs[k++] = runs[count - 1];
+            count = k;
+        }
+    }
+
+    /**
+     * Finds the end of the run that starts at the specified index.
+     * A strictly descending run is reversed in place, which keeps the sort stable.
+     *
+     * @param a the array
+     * @param lo the index where the run starts
+     * @param hi the end of the range, exclusive
+     * @return the index right after the last element of the run
      */
-    private static void mergeSort(int[] a, int n) {
-        if (n < 2) return;
+    private static int runEnd(int[] a, int lo, int hi) {
+        int j = lo + 1;
+        if (j == hi)
+            return hi;
 
-        int mid = n / 2;
-        int[] l = new int[mid];
-        int[] r = new int[n - mid];
+        if (a[j] < a[lo]) { // Strictly descending run
+            while (j + 1 < hi && a[j + 1] < a[j])
+                j++;
+            for (int l = lo, r = j; l < r; l++, r--) { // Reverse the run
+                int tmp = a[l];
+                a[l] = a[r];
+                a[r] = tmp;
+            }
+        } else { // Ascending run
+            while (j + 1 < hi && a[j + 1] >= a[j])
+                j++;
+        }
 
-        // Copy elements to left array
-        for (int i = 0; i < mid; i++)
-            l[i] = a[i];
-        // Copy elements to right array
-        for (int i = mid; i < n; i++)
-            r[i - mid] = a[i];
+        return j + 1;
+    }
 
-        mergeSort(l, mid);
-        mergeSort(r, n - mid);
-        merge(a, l, r, mid, n - mid);
+    /**
+     * Sorts a range of an array with insertion sort, given that a prefix of the range is already sorted.
+     *
+     * @param a the array to be sorted
+     * @param lo the index of the first element to be sorted, inclusive
+     * @param sorted the end of the sorted prefix, exclusive
+     * @param hi the index of the last element to be sorted, exclusive
+     */
+    private static void insertionSort(int[] a, int lo, int sorted, int hi) {
+        for (int i = sorted; i < hi; i++) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > value) { // Shift the larger elements to the right
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+        }
     }
 
     /**
-     * Merges two sorted subarrays into one sorted array.
+     * Merges two adjacent sorted ranges of an array into one sorted range.
+     * Only the left range is copied to the buffer, and equal elements keep the left range first.
      *
-     * @param a the target array to hold the merged result
-     * @param l the left subarray
-     * @param r the right subarray
-     * @param left the size of the left subarray
-     * @param right the size of the right subarray
+     * @param a the array holding both ranges
+     * @param lo the start of the left range, inclusive
+     * @param mid the end of the left range and the start of the right range
+     * @param hi the end of the right range, exclusive
+     * @param buf the merge buffer
+     * @param off the index in the array that corresponds to the start of the buffer
      */
-    private static void merge(int[] a, int[] l, int[] r, int left, int right) {
-        int i = 0, j = 0, k = 0;
+    private static void merge(int[] a, int lo, int mid, int hi, int[] buf, int off) {
+        if (a[mid - 1] <= a[mid]) // The ranges are already in order
+            return;
 
-        // Merge elements from both subarrays into the main array
-        while (i < left && j < right) {
-            if (l[i] <= r[j])
-                a[k++] = l[i++];
+        System.arraycopy(a, lo, buf, lo - off, mid - lo);
+        int i = lo - off, left = mid - off; // Position and end of the left range in the buffer
+        int j = mid, k = lo;
+
+        // Merge elements from both ranges into the array
+        while (i < left && j < hi) {
+            if (buf[i] <= a[j])
+                a[k++] = buf[i++];
             else
-                a[k++] = r[j++];
+                a[k++] = a[j++];
         }
-        // Copy any remaining elements from the left subarray
+        // Copy any remaining elements from the left range
+        // (remaining elements of the right range are already in place)
         while (i < left)
-            a[k++] = l[i++];
-        // Copy any remaining elements from the right subarray
-        while (j < right)
-            a[k++] = r[j++];
+            a[k++] = buf[i++];
+    }
+
+    /**
+     * A fork/join task that sorts a range of an array by sorting both halves in parallel and merging them.
+     */
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a;
+        private final int lo, hi;
+        private final int[] buf;
+        private final int off;
+
+        SortTask(int[] a, int lo, int hi, int[] buf, int off) {
+            this.a = a;
+            this.lo = lo;
+            this.hi = hi;
+            this.buf = buf;
+            this.off = off;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= PARALLEL_LEAF_SIZE) {
+                sequentialSort(a, lo, hi, buf, off);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortTask(a, lo, mid, buf, off), new SortTask(a, mid, hi, buf, off));
+            merge(a, lo, mid, hi, buf, off);
+        }
     }
 
     /**
      * Reads integers from a file and returns them as an array.
+     * The file holds signed decimal integers separated by whitespace, and reading stops at the first token
+     * that is not a valid int. The file is memory-mapped, with large files split into chunks at whitespace
+     * boundaries. The tokens of every chunk are counted first, so the result is allocated once at its exact size
+     * and each chunk is parsed straight into its own part of it; both passes run over the chunks in parallel.
      *
      * @param filePath the path to the file containing integers
      * @return an array of integers read from the file, or null if the file is not found or is invalid
      */
     public static int[] fileToArray(String filePath) {
-        int count = 0;
         File file = new File(filePath);
 
         if (!file.exists() || !file.isFile())
             return null;
 
-        // First pass: Count the number of integers in the file
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextInt()) {
-                scanner.nextInt();
-                count++;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = chunkBounds(channel, size);
+            int chunks = bounds.length - 1;
+
+            // Count the tokens of every chunk, which gives the offset of each chunk in the result
+            int[] tokens = new int[chunks];
+            forEachChunk(chunks, i -> tokens[i] = countTokens(channel, bounds[i], bounds[i + 1]));
+            int[] offsets = new int[chunks + 1];
+            for (int i = 0; i < chunks; i++) {
+                long end = (long) offsets[i] + tokens[i];
+                if (end > Integer.MAX_VALUE - 8)
+                    throw new IOException("Too many integers for an array in " + filePath);
+                offsets[i + 1] = (int) end;
+            }
+
+            // Parse every chunk into its part of the result
+            int[] numbersArray = new int[offsets[chunks]];
+            int[] parsed = new int[chunks];
+            forEachChunk(chunks, i -> parsed[i] = parseChunk(channel, bounds[i], bounds[i + 1], numbersArray, offsets[i]));
+
+            // Keep the values up to the first chunk that stopped at an invalid token
+            for (int i = 0; i < chunks; i++) {
+                if (parsed[i] < tokens[i])
+                    return Arrays.copyOf(numbersArray, offsets[i] + parsed[i]);
             }
-        } catch (FileNotFoundException e) {
+            return numbersArray;
+        } catch (IOException e) {
             e.printStackTrace();
+            return null;
         }
+    }
+
+    /**
+     * Reads whitespace-separated integers from a channel and passes each one to a consumer as it is parsed.
+     * The format is the same as for fileToArray, and reading stops at the first token that is not a valid int.
+     * Only a small read buffer is held in memory.
+     *
+     * @param channel the channel to read from
+     * @param sink the consumer that receives the integers in order
+     * @return the number of integers read
+     * @throws IOException if the channel cannot be read
+     */
+    public static long readInts(ReadableByteChannel channel, IntConsumer sink) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        byte[] bytes = buf.array();
+        long count = 0;
 
-        // Create an array of the appropriate size
-        int[] numbersArray = new int[count];
-        int index = 0;
+        // The state of the token being parsed, which may span two reads
+        boolean inToken = false;
+        boolean negative = false;
+        long value = 0;
+        int digits = 0;
 
-        // Second pass: Read the integers into the array
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextInt())
-                numbersArray[index++] = scanner.nextInt();
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+        int read;
+        while ((read = channel.read(buf)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                byte c = bytes[i];
+                if (c >= '0' && c <= '9') {
+                    inToken = true;
+                    value = appendDigit(value, c - '0');
+                    digits++;
+                } else if (isWhitespace(c)) {
+                    if (inToken) { // The token is complete
+                        if (!isValidInt(negative, value, digits))
+                            return count;
+                        sink.accept((int) (negative ? -value : value));
+                        count++;
+                        inToken = false;
+                        negative = false;
+                        value = 0;
+                        digits = 0;
+                    }
+                } else if ((c == '-' || c == '+') && !inToken) { // Sign at the start of a token
+                    inToken = true;
+                    negative = c == '-';
+                } else { // Invalid character
+                    return count;
+                }
+            }
+            buf.clear();
+        }
+
+        if (inToken) { // The last token ends at the end of the input
+            if (!isValidInt(negative, value, digits))
+                return count;
+            sink.accept((int) (negative ? -value : value));
+            count++;
         }
 
-        return numbersArray;
+        return count;
+    }
+
+    /**
+     * Writes an int to a buffer as ASCII decimal text, without creating a string.
+     * The buffer must have at least 11 bytes remaining.
+     *
+     * @param buf the buffer to write to
+     * @param value the value to be written
+     */
+    public static void putDecimal(ByteBuffer buf, int value) {
+        if (value == Integer.MIN_VALUE) { // Its absolute value does not fit in an int
+            buf.put(MIN_VALUE_BYTES);
+            return;
+        }
+        if (value < 0) {
+            buf.put((byte) '-');
+            value = -value;
+        }
+
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10)
+            digits++;
+
+        int pos = buf.position();
+        for (int i = pos + digits - 1; i >= pos; i--) { // Write the digits from the last one
+            buf.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buf.position(pos + digits);
+    }
+
+    /**
+     * Appends a decimal digit to the absolute value of a token being parsed.
+     * The value is clamped to a sentinel above the magnitude of Integer.MIN_VALUE, so a long token stays out of range
+     * whatever its sign, and the long never overflows.
+     *
+     * @param value the absolute value parsed so far
+     * @param digit the digit to be appended, from 0 to 9
+     * @return the new absolute value, or OUT_OF_RANGE if it does not fit in an int
+     */
+    private static long appendDigit(long value, int digit) {
+        return Math.min(value * 10 + digit, OUT_OF_RANGE);
+    }
+
+    /**
+     * Checks whether a parsed token is a valid int.
+     *
+     * @param negative whether the token has a minus sign
+     * @param value the absolute value of the token, clamped by appendDigit
+     * @param digits the number of digits in the token
+     * @return true if the token has digits and fits in an int
+     */
+    private static boolean isValidInt(boolean negative, long value, int digits) {
+        return digits > 0 && value <= (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE);
+    }
+
+    /**
+     * A step of fileToArray that is run on each chunk of a file.
+     */
+    private interface ChunkTask {
+        void run(int chunk) throws IOException;
+    }
+
+    /**
+     * Runs a task on every chunk of a file, in parallel if there is more than one.
+     *
+     * @param chunks the number of chunks
+     * @param task the task to run on each chunk
+     * @throws IOException if the task fails on a chunk
+     */
+    private static void forEachChunk(int chunks, ChunkTask task) throws IOException {
+        if (chunks == 1) {
+            task.run(0);
+            return;
+        }
+
+        try {
+            IntStream.range(0, chunks).parallel().forEach(i -> {
+                try {
+                    task.run(i);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Splits a file into chunks for parallel parsing.
+     * Every boundary is moved forward to a whitespace byte, so no number is split between two chunks.
+     *
+     * @param channel the file channel
+     * @param size the size of the file
+     * @return the chunk boundaries, starting with 0 and ending with the size of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        long target = Math.min(Math.max(size / (parallelism * 4L), MIN_CHUNK_SIZE), MAX_CHUNK_SIZE);
+        int chunks = (int) Math.max(1, (size + target - 1) / target);
+
+        long[] bounds = new long[chunks + 1];
+        int count = 1; // bounds[0] is 0
+        ByteBuffer probe = ByteBuffer.allocate(64);
+        for (int k = 1; k < chunks; k++) {
+            long p = Math.max(k * target, bounds[count - 1]);
+            // Move forward to the next whitespace byte
+            boolean found = false;
+            while (!found && p < size) {
+                probe.clear();
+                int read = channel.read(probe, p);
+                if (read <= 0)
+                    break;
+                for (int i = 0; i < read; i++, p++) {
+                    if (isWhitespace(probe.get(i))) {
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            if (p >= size) // The rest of the file is one token
+                break;
+            if (p > bounds[count - 1])
+                bounds[count++] = p;
+        }
+        bounds[count++] = size;
+
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Maps a chunk of a file into memory and counts its tokens, the runs of bytes that are not whitespace.
+     *
+     * @param channel the file channel
+     * @param start the offset of the chunk, which starts at a whitespace byte or at the start of the file
+     * @param end the end of the chunk, exclusive, which is a whitespace byte or the end of the file
+     * @return the number of tokens in the chunk, valid or not
+     * @throws IOException if the file cannot be read
+     */
+    private static int countTokens(FileChannel channel, long start, long end) throws IOException {
+        int length = (int) (end - start);
+        if (length == 0)
+            return 0;
+
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        byte[] bytes = new byte[Math.min(length, READ_BUFFER_SIZE)]; // The bytes are copied out in blocks
+        int tokens = 0;
+        int previous = 1; // Whether the previous byte was whitespace; the chunk starts after whitespace
+        for (int pos = 0; pos < length; pos += bytes.length) {
+            int n = Math.min(bytes.length, length - pos);
+            buf.get(pos, bytes, 0, n);
+            for (int i = 0; i < n; i++) {
+                int whitespace = WHITESPACE[bytes[i] & 0xFF];
+                tokens += previous & (whitespace ^ 1); // The first byte of a token follows whitespace
+                previous = whitespace;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Maps a chunk of a file into memory and parses the integers in it into an array.
+     *
+     * @param channel the file channel
+     * @param start the offset of the chunk, which starts at a whitespace byte or at the start of the file
+     * @param end the end of the chunk, exclusive, which is a whitespace byte or the end of the file
+     * @param dest the array to receive the integers, with room for every token of the chunk
+     * @param off the index in the array of the first integer
+     * @return the number of integers parsed, which is less than the number of tokens if parsing stopped at an invalid one
+     * @throws IOException if the file cannot be read
+     */
+    private static int parseChunk(FileChannel channel, long start, long end, int[] dest, int off) throws IOException {
+        int length = (int) (end - start);
+        int count = 0;
+        if (length == 0)
+            return count;
+
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        int i = 0;
+        while (true) {
+            // Skip the whitespace before the next token
+            while (i < length && isWhitespace(buf.get(i)))
+                i++;
+            if (i == length)
+                break;
+
+            boolean negative = false;
+            byte c = buf.get(i);
+            if (c == '-' || c == '+') { // Optional sign
+                negative = c == '-';
+                i++;
+            }
+
+            long value = 0;
+            int digits = 0;
+            while (i < length && (c = buf.get(i)) >= '0' && c <= '9') {
+                value = appendDigit(value, c - '0');
+                digits++;
+                i++;
+            }
+
+            // A token must be digits followed by whitespace, and must fit in an int
+            if ((i < length && !isWhitespace(buf.get(i))) || !isValidInt(negative, value, digits))
+                break;
+            dest[off + count++] = (int) (negative ? -value : value);
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks whether a byte is an ASCII whitespace character, as accepted between numbers in input files.
+     *
+     * @param c the byte to be checked
+     * @return true if the byte is whitespace
+     */
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || (c >= '\t' && c <= '\r') || (c >= 0x1C && c <= 0x1F);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,518 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The BatchRunner class replays a script of heap operations against one heap implementation, without any
+ * per-operation output, and reports the throughput, the latency percentiles of each operation and the final heap sizes.
+ * <p>
+ * A text script holds one command per line, on heaps that are named by the script and created on first use.
+ * Heap names cannot be integers, so a command that is missing its heap name is reported instead of misread,
+ * and a command with more words than it uses is rejected:
+ * <pre>
+ * make A 4 7 3 9     build A from the listed values
+ * load A file.txt    build A from a file of whitespace-separated integers
+ * insert A 5 8       insert each listed value into A
+ * min A              read the minimum of A
+ * extract A          extract the minimum of A
+ * sort A             sort A, discarding the output (A becomes empty)
+ * union A B          merge B into A
+ * # comment
+ * </pre>
+ * A binary op log holds the same operations in a compact form and is recognized by its magic number.
+ * It is written by compile. All little-endian:
+ * <pre>
+ * header:  int magic 0x4C504F48 ("HOPL"), short version 1, short number of heaps
+ * records: byte opcode, byte heap, then
+ *          MAKE:   int n, n ints
+ *          INSERT: int value
+ *          UNION:  byte other heap
+ * </pre>
+ * Scripts are parsed completely, and files are loaded, before the replay starts, so only heap operations are timed.
+ */
+public class BatchRunner {
+    private static final int MAGIC = 0x4C504F48;   // "HOPL" in little-endian order
+    private static final short VERSION = 1;
+    private static final int MAX_HEAPS = 256;      // Heaps are numbered by a byte in an op log
+    private static final int BUFFER_SIZE = 1 << 16; // Op logs are read and written 64 KB at a time
+
+    // The opcodes, which are also the indices of the latency histograms
+    private static final byte MAKE = 0;
+    private static final byte INSERT = 1;
+    private static final byte MIN = 2;
+    private static final byte EXTRACT = 3;
+    private static final byte SORT = 4;
+    private static final byte UNION = 5;
+    private static final String[] OP_NAMES = {"make", "insert", "min", "extract", "sort", "union"};
+
+    private final List<String> heapNames = new ArrayList<>(); // The name of each heap, by number
+    private final Map<String, Integer> heapNumbers = new HashMap<>();
+    private byte[] codes = new byte[1024]; // The opcode of each operation
+    private int[] heaps = new int[1024];   // The heap of each operation
+    private int[] args = new int[1024];    // The value, the other heap, or the index in arrays of each operation
+    private int count = 0;                 // The number of operations
+    private final List<int[]> arrays = new ArrayList<>(); // The input of each make
+
+    /**
+     * Constructs an empty batch, to be filled by parse.
+     */
+    private BatchRunner() {
+    }
+
+    /**
+     * Reads a text script or a binary op log.
+     *
+     * @param path the path of the script or op log
+     * @return the parsed operations
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file holds an invalid command
+     */
+    public static BatchRunner parse(Path path) throws IOException {
+        BatchRunner batch = new BatchRunner();
+        if (isOpLog(path))
+            batch.readOpLog(path);
+        else
+            batch.readScript(path);
+        return batch;
+    }
+
+    /**
+     * Returns whether a file starts with the magic number of an op log.
+     *
+     * @param path the path of the file
+     * @return true if the file is a binary op log
+     * @throws IOException if the file cannot be read
+     */
+    private static boolean isOpLog(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining() && channel.read(buf) >= 0);
+            return !buf.hasRemaining() && buf.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Returns the number of a heap, numbering it if it is new.
+     *
+     * @param name the name of the heap
+     * @return the number of the heap
+     * @throws IllegalArgumentException if the name is an integer, or there are too many heaps
+     */
+    private int heapNumber(String name) {
+        Integer number = heapNumbers.get(name);
+        if (number != null)
+            return number;
+
+        if (name.matches("[+-]?[0-9]+"))
+            throw new IllegalArgumentException("Not a heap name: " + name + " (is the heap name missing?)");
+        if (heapNames.size() == MAX_HEAPS)
+            throw new IllegalArgumentException("A batch can use at most " + MAX_HEAPS + " heaps");
+        heapNames.add(name);
+        heapNumbers.put(name, heapNames.size() - 1);
+        return heapNames.size() - 1;
+    }
+
+    /**
+     * Appends an operation.
+     *
+     * @param code the opcode
+     * @param heap the number of the heap
+     * @param arg the argument of the operation
+     */
+    private void add(byte code, int heap, int arg) {
+        if (count == codes.length) {
+            int capacity = count + (count >> 1);
+            codes = Arrays.copyOf(codes, capacity);
+            heaps = Arrays.copyOf(heaps, capacity);
+            args = Arrays.copyOf(args, capacity);
+        }
+        codes[count] = code;
+        heaps[count] = heap;
+        args[count] = arg;
+        count++;
+    }
+
+    /**
+     * Parses a text script.
+     *
+     * @param path the path of the script
+     * @throws IOException if the script or a file it loads cannot be read
+     * @throws IllegalArgumentException if a line holds an invalid command
+     */
+    private void readScript(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String text = line.strip();
+                if (text.isEmpty() || text.startsWith("#")) // Blank line or comment
+                    continue;
+
+                try {
+                    parseCommand(text.split("\\s+"), path);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses one command of a text script.
+     *
+     * @param words the words of the command
+     * @param script the path of the script, which relative load paths are resolved against
+     * @throws IllegalArgumentException if the command is invalid
+     */
+    private void parseCommand(String[] words, Path script) {
+        String command = words[0];
+        if (words.length < 2)
+            throw new IllegalArgumentException("Missing heap name: " + command);
+        int heap = heapNumber(words[1]);
+
+        switch (command) {
+            case "make":
+                arrays.add(parseValues(words, 2));
+                add(MAKE, heap, arrays.size() - 1);
+                break;
+
+            case "load":
+                if (words.length != 3)
+                    throw new IllegalArgumentException("Usage: load <heap> <file>");
+                Path file = script.resolveSibling(words[2]);
+                int[] arr = ArrayUtils.fileToArray(file.toString());
+                if (arr == null)
+                    throw new IllegalArgumentException("Cannot read " + file);
+                arrays.add(arr);
+                add(MAKE, heap, arrays.size() - 1);
+                break;
+
+            case "insert":
+                if (words.length < 3)
+                    throw new IllegalArgumentException("Usage: insert <heap> <value>...");
+                for (int value : parseValues(words, 2))
+                    add(INSERT, heap, value);
+                break;
+
+            case "min":
+                checkWordCount(words, "Usage: min <heap>");
+                add(MIN, heap, 0);
+                break;
+
+            case "extract":
+                checkWordCount(words, "Usage: extract <heap>");
+                add(EXTRACT, heap, 0);
+                break;
+
+            case "sort":
+                checkWordCount(words, "Usage: sort <heap>");
+                add(SORT, heap, 0);
+                break;
+
+            case "union":
+                if (words.length != 3)
+                    throw new IllegalArgumentException("Usage: union <heap> <other heap>");
+                add(UNION, heap, heapNumber(words[2]));
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    /**
+     * Checks that a command that takes only a heap name has no other words.
+     *
+     * @param words the words of the command
+     * @param usage the message of the exception
+     * @throws IllegalArgumentException if the command has words after the heap name
+     */
+    private static void checkWordCount(String[] words, String usage) {
+        if (words.length != 2)
+            throw new IllegalArgumentException(usage);
+    }
+
+    /**
+     * Parses the integers at the end of a command.
+     *
+     * @param words the words of the command
+     * @param from the index of the first integer
+     * @return the integers
+     * @throws IllegalArgumentException if a word is not a valid int
+     */
+    private static int[] parseValues(String[] words, int from) {
+        int[] values = new int[words.length - from];
+        for (int i = from; i < words.length; i++) {
+            try {
+                values[i - from] = Integer.parseInt(words[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a valid integer: " + words[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Parses a binary op log.
+     *
+     * @param path the path of the op log
+     * @throws IOException if the op log cannot be read
+     * @throws IllegalArgumentException if the op log is not valid
+     */
+    private void readOpLog(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buf.limit(0);
+
+            need(channel, buf, 8);
+            buf.getInt(); // The magic number, already checked
+            short version = buf.getShort();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unsupported op log version " + version + ": " + path);
+            int heapCount = buf.getShort() & 0xFFFF;
+            for (int i = 0; i < heapCount; i++)
+                heapNumber("#" + i);
+
+            while (need(channel, buf, 2)) {
+                byte code = buf.get();
+                int heap = checkHeap(buf.get() & 0xFF, heapCount, path);
+                switch (code) {
+                    case MAKE:
+                        if (!need(channel, buf, Integer.BYTES))
+                            throw truncated(path);
+                        int n = buf.getInt();
+                        if (n < 0)
+                            throw new IllegalArgumentException("Negative make length in " + path);
+                        int[] arr = new int[n];
+                        for (int i = 0; i < n; i++) {
+                            if (!need(channel, buf, Integer.BYTES))
+                                throw truncated(path);
+                            arr[i] = buf.getInt();
+                        }
+                        arrays.add(arr);
+                        add(MAKE, heap, arrays.size() - 1);
+                        break;
+
+                    case INSERT:
+                        if (!need(channel, buf, Integer.BYTES))
+                            throw truncated(path);
+                        add(INSERT, heap, buf.getInt());
+                        break;
+
+                    case MIN:
+                    case EXTRACT:
+                    case SORT:
+                        add(code, heap, 0);
+                        break;
+
+                    case UNION:
+                        if (!need(channel, buf, 1))
+                            throw truncated(path);
+                        add(UNION, heap, checkHeap(buf.get() & 0xFF, heapCount, path));
+                        break;
+
+                    default:
+                        throw new IllegalArgumentException("Unknown opcode " + code + " in " + path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes sure a buffer holds at least the specified number of bytes, reading more from a channel if needed.
+     *
+     * @param channel the channel to read from
+     * @param buf the buffer, ready to be read from
+     * @param bytes the number of bytes needed
+     * @return true if the bytes are available, false if the channel ended first
+     * @throws IOException if the channel cannot be read
+     */
+    private static boolean need(FileChannel channel, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() >= bytes)
+            return true;
+
+        buf.compact();
+        while (buf.position() < bytes && channel.read(buf) >= 0);
+        buf.flip();
+        return buf.remaining() >= bytes;
+    }
+
+    /**
+     * Checks the number of a heap in an op log.
+     *
+     * @param heap the number of the heap
+     * @param heapCount the number of heaps declared by the op log
+     * @param path the path of the op log
+     * @return the number of the heap
+     * @throws IllegalArgumentException if the heap is not declared
+     */
+    private static int checkHeap(int heap, int heapCount, Path path) {
+        if (heap >= heapCount)
+            throw new IllegalArgumentException("Heap " + heap + " is not declared in " + path);
+        return heap;
+    }
+
+    /**
+     * Returns the exception for an op log that ends in the middle of a record.
+     *
+     * @param path the path of the op log
+     * @return the exception to be thrown
+     */
+    private static IllegalArgumentException truncated(Path path) {
+        return new IllegalArgumentException("Truncated op log: " + path);
+    }
+
+    /**
+     * Converts a text script into a binary op log. Loaded files are stored in the op log.
+     * The heaps are numbered in the order the script first uses them.
+     *
+     * @param script the path of the text script
+     * @param opLog the path of the op log, which is replaced if it exists
+     * @return the number of operations written
+     * @throws IOException if a file cannot be read or written
+     * @throws IllegalArgumentException if the script holds an invalid command
+     */
+    public static int compile(Path script, Path opLog) throws IOException {
+        BatchRunner batch = new BatchRunner();
+        batch.readScript(script);
+
+        try (FileChannel channel = FileChannel.open(opLog, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putShort(VERSION).putShort((short) batch.heapNames.size());
+            for (int i = 0; i < batch.count; i++) {
+                if (buf.remaining() < 2 + 2 * Integer.BYTES) // Room for the largest fixed-size record
+                    flush(channel, buf);
+                byte code = batch.codes[i];
+                buf.put(code).put((byte) batch.heaps[i]);
+                if (code == INSERT) {
+                    buf.putInt(batch.args[i]);
+                } else if (code == UNION) {
+                    buf.put((byte) batch.args[i]);
+                } else if (code == MAKE) {
+                    int[] arr = batch.arrays.get(batch.args[i]);
+                    buf.putInt(arr.length);
+                    for (int value : arr) {
+                        if (buf.remaining() < Integer.BYTES)
+                            flush(channel, buf);
+                        buf.putInt(value);
+                    }
+                }
+            }
+            flush(channel, buf);
+        }
+        return batch.count;
+    }
+
+    /**
+     * Writes the contents of a buffer to a channel and clears the buffer.
+     *
+     * @param channel the channel to write to
+     * @param buf the buffer holding the bytes to be written
+     * @throws IOException if the channel cannot be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())
+            channel.write(buf);
+        buf.clear();
+    }
+
+    /**
+     * Returns the number of operations in the batch.
+     *
+     * @return the number of operations
+     */
+    public int getOperationCount() {
+        return count;
+    }
+
+    /**
+     * Replays the operations against new heaps of the chosen implementation and prints a report.
+     * The batch is left unchanged, so it can be replayed again, for example against another implementation.
+     *
+     * @param implementation the number of the heap implementation, as listed in the main menu
+     * @param out the stream to print the report to
+     * @throws IllegalArgumentException if there is no such implementation
+     */
+    public void run(int implementation, PrintStream out) {
+        Heap[] heapObjects = new Heap[heapNames.size()];
+        for (int i = 0; i < heapObjects.length; i++) {
+            heapObjects[i] = Program.createHeap(implementation);
+            if (heapObjects[i] == null)
+                throw new IllegalArgumentException("No heap implementation number " + implementation);
+        }
+
+        LatencyHistogram[] latencies = new LatencyHistogram[OP_NAMES.length];
+        for (int i = 0; i < latencies.length; i++)
+            latencies[i] = new LatencyHistogram();
+        long checksum = 0; // Combines every value read, so the reads cannot be optimized away and replays can be compared
+
+        // Copy the make inputs before the clock starts, as makeHeap may reorder its input
+        int[][] inputs = new int[arrays.size()][];
+        for (int i = 0; i < inputs.length; i++)
+            inputs[i] = arrays.get(i).clone();
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Heap heap = heapObjects[heaps[i]];
+            long start = System.nanoTime();
+            switch (codes[i]) {
+                case MAKE:
+                    heap.makeHeap(inputs[args[i]]);
+                    break;
+                case INSERT:
+                    heap.insert(args[i]);
+                    break;
+                case MIN:
+                    checksum = checksum * 31 + heap.getMinVal();
+                    break;
+                case EXTRACT:
+                    checksum = checksum * 31 + heap.extractMin();
+                    break;
+                case SORT:
+                    checksum = checksum * 31 + heap.size();
+                    heap.sortHeap(value -> { });
+                    break;
+                default: // UNION
+                    heap.unionHeap(heapObjects[args[i]]);
+                    break;
+            }
+            latencies[codes[i]].record(System.nanoTime() - start);
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        out.printf("Replayed %d operations in %.3f ms: %.0f ops/sec%n", count, elapsed / 1e6,
+                elapsed == 0 ? 0.0 : count * 1e9 / elapsed);
+        for (int op = 0; op < OP_NAMES.length; op++) {
+            if (latencies[op].getCount() > 0)
+                out.printf("%-8s %s%n", OP_NAMES[op], latencies[op]);
+        }
+        for (int i = 0; i < heapObjects.length; i++)
+            out.printf("Heap %s: %d elements%n", heapNames.get(i), heapObjects[i].size());
+        out.printf("Checksum: %d%n", checksum);
+
+        for (Heap heap : heapObjects) { // Release off-heap memory
+            if (heap instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) heap).close();
+                } catch (Exception e) {
+                    // Nothing left to release
+                }
+            }
+        }
+    }
+}
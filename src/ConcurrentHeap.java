@@ -0,0 +1,479 @@
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * The ConcurrentHeap class implements a minimum heap that can be shared by many producer and consumer threads.
+ * The elements are spread over several IntArrayHeap queues, each guarded by its own lock, and the minimum of every
+ * queue is cached where any thread can read it without locking. In both modes insert goes to a random queue
+ * that no other thread holds, so producers do not contend with each other or with consumers of other queues.
+ * <p>
+ * In strict mode, the default, extractMin always returns the true minimum. It locks only the queue with the smallest
+ * cached minimum and checks that no other queue has a smaller one before removing it, retrying elsewhere if one has.
+ * It never returns a value while a smaller value stays in the heap for the whole call, and it is exact when no other
+ * thread modifies the heap. Consumers in strict mode all compete for the queue holding the minimum,
+ * so extractMin scales less well than insert, and under heavy contention it falls back to locking every queue.
+ * <p>
+ * In relaxed mode the heap is a MultiQueue: extractMin looks at the cached minimums of two random queues
+ * and removes from the better one, skipping queues that another thread holds, so consumers scale as well.
+ * In return, extractMin may return an element that is close to, but not exactly, the minimum.
+ * A good number of queues is a small multiple of the number of threads.
+ * <p>
+ * getMinVal, drainMin, sortHeap and forEachValue see all the queues and are exact in both modes;
+ * except for getMinVal, they lock every queue while they run.
+ */
+public class ConcurrentHeap extends Heap {
+    private static final int QUEUES_PER_THREAD = 2; // The number of queues per available processor by default
+    private static final int PAD_SHIFT = 4;         // Cached minimums are 16 ints (64 bytes) apart, so each has its own cache line
+    private static final int STRICT_ATTEMPTS = 8;   // Strict extractions that keep losing races then lock every queue
+
+    private final IntArrayHeap[] queues; // The queues holding the elements
+    private final ReentrantLock[] locks; // The lock of each queue
+    private final AtomicIntegerArray mins; // The minimum of each queue, or Integer.MAX_VALUE if it is empty
+    private final LongAdder size;        // The number of elements in all the queues
+    private final boolean relaxed;       // Whether extractMin may return an element close to the minimum
+
+    /**
+     * Constructs an empty strict ConcurrentHeap with two queues per available processor.
+     */
+    public ConcurrentHeap() {
+        this(false);
+    }
+
+    /**
+     * Constructs an empty ConcurrentHeap with two queues per available processor, either strict or relaxed.
+     *
+     * @param relaxed whether extractMin may return an element close to the minimum in return for scalability
+     */
+    public ConcurrentHeap(boolean relaxed) {
+        this(QUEUES_PER_THREAD * Runtime.getRuntime().availableProcessors(), relaxed);
+    }
+
+    /**
+     * Constructs an empty ConcurrentHeap with the specified number of queues, either strict or relaxed.
+     *
+     * @param queueCount the number of queues
+     * @param relaxed whether extractMin may return an element close to the minimum in return for scalability
+     * @throws IllegalArgumentException if the number of queues is not positive
+     */
+    public ConcurrentHeap(int queueCount, boolean relaxed) {
+        if (queueCount < 1)
+            throw new IllegalArgumentException("Queue count must be positive, got " + queueCount);
+
+        queues = new IntArrayHeap[queueCount];
+        locks = new ReentrantLock[queueCount];
+        for (int i = 0; i < queueCount; i++) {
+            queues[i] = new IntArrayHeap();
+            locks[i] = new ReentrantLock();
+        }
+        mins = new AtomicIntegerArray(queueCount << PAD_SHIFT);
+        for (int i = 0; i < queueCount; i++)
+            mins.set(i << PAD_SHIFT, Integer.MAX_VALUE);
+        size = new LongAdder();
+        this.relaxed = relaxed;
+    }
+
+    /**
+     * Returns whether extractMin may return an element close to, but not exactly, the minimum.
+     *
+     * @return true if the heap is relaxed, false if it is strict
+     */
+    public boolean isRelaxed() {
+        return relaxed;
+    }
+
+    /**
+     * Returns the number of queues holding the elements.
+     *
+     * @return the number of queues
+     */
+    public int getQueueCount() {
+        return queues.length;
+    }
+
+    /**
+     * Makes every queue report the work done inside its operations to the specified metrics.
+     *
+     * @param metrics the metrics to report to, or null to stop reporting
+     */
+    @Override
+    void attachMetrics(HeapMetrics metrics) {
+        super.attachMetrics(metrics);
+        for (IntArrayHeap queue : queues)
+            queue.attachMetrics(metrics);
+    }
+
+    /**
+     * Returns the cached minimum of a queue.
+     *
+     * @param i the index of the queue
+     * @return the minimum of the queue, or Integer.MAX_VALUE if it is empty
+     */
+    private int cachedMin(int i) {
+        return mins.get(i << PAD_SHIFT);
+    }
+
+    /**
+     * Updates the cached minimum of a queue after it has changed. The caller must hold the lock of the queue.
+     *
+     * @param i the index of the queue
+     */
+    private void publish(int i) {
+        mins.set(i << PAD_SHIFT, queues[i].getMinVal());
+    }
+
+    /**
+     * Locks a random queue, trying queues that are free before waiting for one.
+     *
+     * @return the index of the locked queue
+     */
+    private int lockAny() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int n = queues.length;
+        int i = random.nextInt(n);
+        for (int attempt = 1; attempt < n; attempt++) { // Each attempt tries another random queue
+            if (locks[i].tryLock())
+                return i;
+            i = random.nextInt(n);
+        }
+        locks[i].lock(); // Every attempt failed, wait for the last queue
+        return i;
+    }
+
+    /**
+     * Locks every queue, in index order so that two threads locking all queues cannot deadlock.
+     */
+    private void lockAll() {
+        for (ReentrantLock lock : locks)
+            lock.lock();
+    }
+
+    /**
+     * Unlocks every queue.
+     */
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--)
+            locks[i].unlock();
+    }
+
+    /**
+     * Inserts a new value into the heap.
+     *
+     * @param value the value to be inserted
+     */
+    @Override
+    public void insert(int value) {
+        int i = lockAny();
+        try {
+            queues[i].insert(value);
+            if (value < cachedMin(i))
+                publish(i);
+            size.increment(); // Counted under the lock, so that makeHeap cannot reset the count in between
+        } finally {
+            locks[i].unlock();
+        }
+    }
+
+    /**
+     * Inserts a batch of values into the heap.
+     * The batch is split evenly over the queues, so that it does not end up in a single queue.
+     *
+     * @param values the array holding the values to be inserted
+     * @param off the index of the first value in the array
+     * @param len the number of values to be inserted
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     */
+    @Override
+    public void insertAll(int[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        int n = queues.length;
+        int chunk = (len + n - 1) / n;
+        int start = ThreadLocalRandom.current().nextInt(n); // Do not let every thread start with the same queue
+
+        for (int c = 0; c * chunk < len; c++) {
+            int i = (start + c) % n;
+            int from = off + c * chunk;
+            int count = Math.min(chunk, off + len - from);
+            locks[i].lock();
+            try {
+                queues[i].insertAll(values, from, count);
+                publish(i);
+                size.add(count);
+            } finally {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Transforms an array into a heap, replacing the elements of the heap.
+     * The array is split evenly over the queues and each queue is built in linear time,
+     * with the queues of a large array built in parallel while this thread holds all the locks.
+     * The array itself is not modified.
+     *
+     * @param arr the array to be transformed into a heap
+     */
+    @Override
+    public void makeHeap(int[] arr) {
+        int n = queues.length;
+        int chunk = (arr.length + n - 1) / n;
+
+        lockAll();
+        try {
+            IntStream indices = IntStream.range(0, n);
+            if (buildInParallel(arr.length))
+                indices = indices.parallel();
+            indices.forEach(i -> {
+                int from = Math.min(i * chunk, arr.length);
+                queues[i].makeHeap(new int[0]);
+                queues[i].insertAll(arr, from, Math.min(chunk, arr.length - from));
+                publish(i);
+            });
+            size.reset();
+            size.add(arr.length);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     * While other threads modify the heap, the result is only an estimate.
+     *
+     * @return the number of elements in the heap
+     */
+    @Override
+    public long size() {
+        return Math.max(size.sum(), 0); // A concurrent extract can be counted before its insert
+    }
+
+    /**
+     * Returns the minimum value in the heap, from the cached minimums of the queues.
+     * While other threads modify the heap, the result is the minimum at some recent point.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int getMinVal() {
+        int minVal = Integer.MAX_VALUE;
+        for (int i = 0; i < queues.length; i++)
+            minVal = Math.min(minVal, cachedMin(i));
+        return minVal;
+    }
+
+    /**
+     * Removes and returns the minimum value in the heap.
+     * In strict mode, the queue with the smallest cached minimum is locked and checked against the others.
+     * In relaxed mode, the better of two random queues is chosen, and a queue that another thread holds is skipped;
+     * if no element is found that way, every queue is searched in turn.
+     *
+     * @return the minimum value in the heap (close to it in relaxed mode), or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int extractMin() {
+        if (!relaxed)
+            return extractStrict();
+
+        int n = queues.length;
+        if (n > 1) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int attempt = 0; attempt < n; attempt++) {
+                int i = random.nextInt(n);
+                int j = random.nextInt(n);
+                if (cachedMin(j) < cachedMin(i)) // Pick the better of the two
+                    i = j;
+                if (!locks[i].tryLock())
+                    continue;
+                try {
+                    if (queues[i].size() > 0)
+                        return extractFrom(i);
+                } finally {
+                    locks[i].unlock();
+                }
+            }
+        }
+
+        // The random queues were empty or busy: wait for the queues one after another
+        for (int i = 0; i < n; i++) {
+            locks[i].lock();
+            try {
+                if (queues[i].size() > 0)
+                    return extractFrom(i);
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return Integer.MAX_VALUE; // If the heap is empty
+    }
+
+    /**
+     * Removes and returns the true minimum value in the heap.
+     * The queue with the smallest cached minimum is locked, and its minimum is removed if no other queue
+     * has a smaller cached minimum by then. Otherwise another thread got there first, and the search starts again.
+     * If the heap looks empty, or the search keeps losing races, every queue is locked and the minimum taken directly.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    private int extractStrict() {
+        int n = queues.length;
+        for (int attempt = 0; attempt < STRICT_ATTEMPTS; attempt++) {
+            int best = 0;
+            for (int i = 1; i < n; i++) { // Find the queue with the smallest cached minimum
+                if (cachedMin(i) < cachedMin(best))
+                    best = i;
+            }
+
+            locks[best].lock();
+            try {
+                if (queues[best].size() == 0) // Every queue looked empty, make sure under the locks
+                    break;
+                int minVal = queues[best].getMinVal();
+                boolean smallest = true;
+                for (int i = 0; i < n && smallest; i++) // Queues changed since the search would show here
+                    smallest = i == best || cachedMin(i) >= minVal;
+                if (smallest)
+                    return extractFrom(best);
+            } finally {
+                locks[best].unlock();
+            }
+        }
+
+        lockAll();
+        try {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (queues[i].size() > 0 && (best < 0 || queues[i].getMinVal() < queues[best].getMinVal()))
+                    best = i;
+            }
+            return best < 0 ? Integer.MAX_VALUE : extractFrom(best); // MAX_VALUE if the heap is empty
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Removes and returns the minimum value of a queue. The caller must hold the lock of the queue.
+     *
+     * @param i the index of the queue, which must not be empty
+     * @return the minimum value of the queue
+     */
+    private int extractFrom(int i) {
+        int minVal = queues[i].extractMin();
+        publish(i);
+        size.decrement();
+        return minVal;
+    }
+
+    /**
+     * Removes the k smallest values from the heap, in ascending order.
+     * The result is exact in both modes; every queue is locked while the values are removed.
+     *
+     * @param dest the array to receive the values, starting at index 0
+     * @param k the number of values to be extracted
+     * @return the number of values extracted, which is less than k if the heap holds fewer values
+     * @throws IndexOutOfBoundsException if k is negative or greater than the length of the array
+     */
+    @Override
+    public int drainMin(int[] dest, int k) {
+        Objects.checkFromIndexSize(0, k, dest.length);
+        int n = queues.length;
+        int count = 0;
+
+        lockAll();
+        try {
+            if (n == 1) {
+                count = queues[0].drainMin(dest, k);
+            } else {
+                while (count < k) {
+                    // Find the queue with the smallest minimum
+                    int best = -1;
+                    for (int i = 0; i < n; i++) {
+                        if (queues[i].size() > 0 && (best < 0 || queues[i].getMinVal() < queues[best].getMinVal()))
+                            best = i;
+                    }
+                    if (best < 0) // Every queue is empty
+                        break;
+                    dest[count++] = queues[best].extractMin();
+                }
+            }
+
+            for (int i = 0; i < n; i++)
+                publish(i);
+            size.add(-count);
+        } finally {
+            unlockAll();
+        }
+        return count;
+    }
+
+    /**
+     * Passes each value of the heap to an action, queue by queue, without removing it.
+     * Every queue is locked while the values are visited, so the action must not modify this heap.
+     *
+     * @param action the action to be performed on each value
+     */
+    @Override
+    public void forEachValue(IntConsumer action) {
+        lockAll();
+        try {
+            for (IntArrayHeap queue : queues)
+                queue.forEachValue(action);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Moves the elements of another concurrent heap into this heap.
+     * The other heap is emptied first and its elements are then inserted, so the union is not atomic:
+     * a thread using both heaps meanwhile may briefly see the elements in neither of them.
+     * At the end, the other heap is empty.
+     *
+     * @param heap the other heap to be merged
+     * @throws IllegalArgumentException if the other heap is not a ConcurrentHeap
+     */
+    @Override
+    public void unionHeap(Heap heap) {
+        if (!(heap instanceof ConcurrentHeap))
+            throw new IllegalArgumentException("Cannot union a ConcurrentHeap with a " + heap.getClass().getSimpleName());
+
+        ConcurrentHeap other = (ConcurrentHeap) heap;
+        if (other == this)
+            return;
+
+        int[] values = other.removeAll();
+        insertAll(values, 0, values.length);
+    }
+
+    /**
+     * Removes all the elements of the heap, in no particular order.
+     *
+     * @return an array of the removed elements
+     */
+    private int[] removeAll() {
+        lockAll();
+        try {
+            long total = 0;
+            for (IntArrayHeap queue : queues)
+                total += queue.size();
+            if (total > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Heap too large for an array: " + total + " elements");
+
+            int[] values = new int[(int) total];
+            int[] count = {0};
+            for (int i = 0; i < queues.length; i++) {
+                queues[i].forEachValue(value -> values[count[0]++] = value);
+                queues[i].makeHeap(new int[0]);
+                publish(i);
+            }
+            size.add(-total);
+            return values;
+        } finally {
+            unlockAll();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ConcurrentHeapStress class stress-tests ConcurrentHeap in both modes against a single-threaded MinHeap reference.
+ * <p>
+ * Each round runs producer and consumer threads on one heap and then checks that the values extracted,
+ * plus the values left in the heap, are exactly the values inserted, by comparing them in sorted order with
+ * a MinHeap built from the inserted values. Three rounds are run in each mode:
+ * <ul>
+ * <li>mixed: producers insert (one by one and in batches) while consumers extract;</li>
+ * <li>extract only: consumers empty a prefilled heap with no concurrent inserts. In strict mode each consumer
+ * must see its values in ascending order, as no smaller value can appear behind it;</li>
+ * <li>quiescent: one thread extracts everything from a heap built by concurrent producers, which in strict mode
+ * must match the extraction order of the MinHeap exactly.</li>
+ * </ul>
+ * The process exits with status 1 if any check fails.
+ */
+public class ConcurrentHeapStress {
+    private static final int BATCH_SIZE = 64;      // The size of the batches producers insert with insertAll
+    private static final int QUIESCENT_SIZE = 20_000; // The number of values of the quiescent round, kept small for MinHeap
+
+    private final boolean relaxed;
+    private final int threads;
+    private final int opsPerThread;
+    private boolean failed = false;
+
+    /**
+     * Constructs a stress test.
+     *
+     * @param relaxed whether the heap under test is relaxed
+     * @param threads the number of producer threads, and of consumer threads
+     * @param opsPerThread the number of values each producer inserts
+     */
+    ConcurrentHeapStress(boolean relaxed, int threads, int opsPerThread) {
+        this.relaxed = relaxed;
+        this.threads = threads;
+        this.opsPerThread = opsPerThread;
+    }
+
+    /**
+     * Generates the values of a producer. Integer.MAX_VALUE is left out, as extractMin uses it to report an empty heap.
+     *
+     * @param seed the seed of the producer
+     * @param n the number of values
+     * @return the values
+     */
+    private static int[] values(long seed, int n) {
+        return new SplittableRandom(seed).ints(n, Integer.MIN_VALUE, Integer.MAX_VALUE).toArray();
+    }
+
+    /**
+     * Inserts values into a heap, alternating single inserts and insertAll batches.
+     *
+     * @param heap the heap
+     * @param values the values to be inserted
+     */
+    private static void produce(ConcurrentHeap heap, int[] values) {
+        int i = 0;
+        while (i < values.length) {
+            int len = Math.min(BATCH_SIZE, values.length - i);
+            if ((i / BATCH_SIZE) % 2 == 0) {
+                for (int j = i; j < i + len; j++)
+                    heap.insert(values[j]);
+            } else {
+                heap.insertAll(values, i, len);
+            }
+            i += len;
+        }
+    }
+
+    /**
+     * Runs tasks on new threads, all started at once, and waits for them to finish.
+     *
+     * @param tasks the tasks
+     * @return the elapsed time in nanoseconds
+     */
+    private static long runAll(Runnable... tasks) {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            Runnable task = tasks[i];
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task.run();
+            });
+            workers[i].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the workers", e);
+            }
+        }
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Records the result of a check.
+     *
+     * @param ok whether the check passed
+     * @param message the description of the check
+     */
+    private void check(boolean ok, String message) {
+        System.out.println((ok ? "  ok    " : "  FAIL  ") + message);
+        if (!ok)
+            failed = true;
+    }
+
+    /**
+     * Checks that the values extracted from the heap, plus the values left in it, are the values inserted,
+     * comparing them with a MinHeap reference in sorted order.
+     *
+     * @param heap the heap, which is emptied
+     * @param inserted the values inserted by each producer
+     * @param extracted the values extracted by each consumer
+     * @param counts the number of values extracted by each consumer
+     */
+    private void checkMultiset(ConcurrentHeap heap, int[][] inserted, int[][] extracted, int[] counts) {
+        MinHeap reference = new MinHeap();
+        for (int[] values : inserted)
+            reference.insertAll(values, 0, values.length);
+        int[] expected = reference.sortHeapToArray();
+
+        int[] rest = heap.sortHeapToArray();
+        int total = rest.length;
+        for (int count : counts)
+            total += count;
+        int[] actual = Arrays.copyOf(rest, total);
+        int pos = rest.length;
+        for (int c = 0; c < extracted.length; c++) {
+            System.arraycopy(extracted[c], 0, actual, pos, counts[c]);
+            pos += counts[c];
+        }
+        Arrays.sort(actual);
+
+        check(Arrays.equals(actual, expected), "extracted plus remaining values match the MinHeap reference ("
+                + expected.length + " values, " + rest.length + " left)");
+    }
+
+    /**
+     * Runs producers and consumers at the same time.
+     */
+    private void mixed() {
+        ConcurrentHeap heap = new ConcurrentHeap(relaxed);
+        int[][] inserted = new int[threads][];
+        for (int p = 0; p < threads; p++)
+            inserted[p] = values(p, opsPerThread);
+        int[][] extracted = new int[threads][opsPerThread]; // Each consumer takes at most as many as a producer gives
+        int[] counts = new int[threads];
+        AtomicBoolean producing = new AtomicBoolean(true);
+        CountDownLatch producersLeft = new CountDownLatch(threads);
+
+        Runnable[] tasks = new Runnable[2 * threads];
+        for (int p = 0; p < threads; p++) {
+            int[] values = inserted[p];
+            tasks[p] = () -> {
+                produce(heap, values);
+                producersLeft.countDown();
+                if (producersLeft.getCount() == 0)
+                    producing.set(false);
+            };
+        }
+        for (int c = 0; c < threads; c++) {
+            int consumer = c;
+            tasks[threads + c] = () -> {
+                int[] out = extracted[consumer];
+                int n = 0;
+                while (n < opsPerThread) { // Stop early once the producers are done and the heap is empty
+                    int value = heap.extractMin();
+                    if (value != Integer.MAX_VALUE)
+                        out[n++] = value;
+                    else if (!producing.get())
+                        break;
+                }
+                counts[consumer] = n;
+            };
+        }
+
+        long elapsed = runAll(tasks);
+        System.out.printf("  mixed: %d producers and %d consumers in %.1f ms%n", threads, threads, elapsed / 1e6);
+        checkMultiset(heap, inserted, extracted, counts);
+    }
+
+    /**
+     * Empties a prefilled heap with concurrent consumers and no concurrent inserts.
+     */
+    private void extractOnly() {
+        ConcurrentHeap heap = new ConcurrentHeap(relaxed);
+        int[][] inserted = new int[threads][];
+        Runnable[] producers = new Runnable[threads];
+        for (int p = 0; p < threads; p++) {
+            int[] values = values(1000 + p, opsPerThread);
+            inserted[p] = values;
+            producers[p] = () -> produce(heap, values);
+        }
+        runAll(producers);
+
+        int[][] extracted = new int[threads][opsPerThread * threads];
+        int[] counts = new int[threads];
+        Runnable[] consumers = new Runnable[threads];
+        for (int c = 0; c < threads; c++) {
+            int consumer = c;
+            consumers[c] = () -> {
+                int[] out = extracted[consumer];
+                int n = 0;
+                int value;
+                while ((value = heap.extractMin()) != Integer.MAX_VALUE)
+                    out[n++] = value;
+                counts[consumer] = n;
+            };
+        }
+        long elapsed = runAll(consumers);
+        System.out.printf("  extract only: %d consumers in %.1f ms%n", threads, elapsed / 1e6);
+
+        if (!relaxed) {
+            boolean ascending = true;
+            for (int c = 0; c < threads && ascending; c++) {
+                for (int i = 1; i < counts[c] && ascending; i++)
+                    ascending = extracted[c][i - 1] <= extracted[c][i];
+            }
+            check(ascending, "every consumer extracted its values in ascending order");
+        }
+        checkMultiset(heap, inserted, extracted, counts);
+    }
+
+    /**
+     * Extracts everything on one thread from a heap built by concurrent producers,
+     * and compares the order with a MinHeap in strict mode.
+     */
+    private void quiescent() {
+        ConcurrentHeap heap = new ConcurrentHeap(relaxed);
+        MinHeap reference = new MinHeap();
+        int per = Math.max(1, QUIESCENT_SIZE / threads);
+        Runnable[] producers = new Runnable[threads];
+        for (int p = 0; p < threads; p++) {
+            int[] values = values(2000 + p, per);
+            reference.insertAll(values, 0, values.length);
+            producers[p] = () -> produce(heap, values);
+        }
+        runAll(producers);
+
+        check(heap.size() == reference.size(), "size after concurrent inserts is " + reference.size());
+        check(heap.getMinVal() == reference.getMinVal(), "getMinVal matches the MinHeap reference");
+        if (relaxed) {
+            check(Arrays.equals(heap.sortHeapToArray(), reference.sortHeapToArray()),
+                    "sortHeap matches the MinHeap reference");
+            return;
+        }
+
+        boolean same = true;
+        long n = reference.size();
+        for (long i = 0; i < n && same; i++)
+            same = heap.extractMin() == reference.extractMin();
+        check(same && heap.size() == 0, "extractMin order matches the MinHeap reference");
+    }
+
+    /**
+     * Runs every round of the test.
+     *
+     * @return true if every check passed
+     */
+    boolean run() {
+        System.out.println((relaxed ? "Relaxed" : "Strict") + " ConcurrentHeap with "
+                + new ConcurrentHeap(relaxed).getQueueCount() + " queues:");
+        mixed();
+        extractOnly();
+        quiescent();
+        return !failed;
+    }
+
+    /**
+     * Runs the stress test in strict and relaxed mode.
+     *
+     * @param args optionally the number of producer and of consumer threads (4),
+     *             and the number of values each producer inserts (200000)
+     */
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        if (threads < 1 || opsPerThread < 1) {
+            System.err.println("Usage: java ConcurrentHeapStress [threads] [values per producer]");
+            System.exit(2);
+        }
+
+        boolean ok = new ConcurrentHeapStress(false, threads, opsPerThread).run();
+        ok &= new ConcurrentHeapStress(true, threads, opsPerThread).run();
+        System.out.println(ok ? "All checks passed" : "Some checks FAILED");
+        if (!ok)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,437 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * The ExternalSort class sorts files of whitespace-separated integers that are too large to fit in memory.
+ * The input is parsed into chunks that fit in the memory budget, each chunk is sorted with ArrayUtils.mergeSort
+ * and spilled to a temporary run file of raw little-endian ints, and the runs are merged with KWayMerge.
+ * When there are more runs than the fan-in, groups of runs are merged into longer runs first.
+ * Input that fits in a single chunk is sorted in memory without any temporary files.
+ */
+public class ExternalSort {
+    private static final long DEFAULT_MEMORY_BUDGET = 64L << 20; // 64 MB
+    private static final int DEFAULT_FAN_IN = 64;
+    private static final int MIN_BUFFER_SIZE = 1 << 12;  // Run files are read at least 4 KB at a time
+    private static final int MAX_BUFFER_SIZE = 1 << 20;  // and at most 1 MB at a time
+    private static final int WRITE_BUFFER_SIZE = 1 << 16; // Runs and output are written 64 KB at a time
+    private static final int MIN_CHUNK_SIZE = 1 << 12;    // The smallest chunk allocated, in ints
+
+    private final long memoryBudget; // The number of bytes the sort may use for values and buffers
+    private final int fanIn;         // The largest number of runs merged at once
+    private final Path tempDir;      // The directory of the run files
+
+    /**
+     * Constructs an external sort with a 64 MB memory budget and a fan-in of 64,
+     * keeping its run files in the default temporary directory.
+     */
+    public ExternalSort() {
+        this(DEFAULT_MEMORY_BUDGET, DEFAULT_FAN_IN, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Constructs an external sort.
+     *
+     * @param memoryBudget the number of bytes the sort may use for values and buffers, at least 1 MB
+     * @param fanIn the largest number of runs merged at once, at least 2
+     * @param tempDir the directory of the run files
+     * @throws IllegalArgumentException if the memory budget or the fan-in is too small
+     */
+    public ExternalSort(long memoryBudget, int fanIn, Path tempDir) {
+        if (memoryBudget < (1 << 20))
+            throw new IllegalArgumentException("Memory budget must be at least 1 MB, got " + memoryBudget);
+        if (fanIn < 2)
+            throw new IllegalArgumentException("Fan-in must be at least 2, got " + fanIn);
+
+        this.memoryBudget = memoryBudget;
+        this.fanIn = fanIn;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Returns the number of bytes the sort may use for values and buffers.
+     *
+     * @return the memory budget in bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns the largest number of runs merged at once.
+     *
+     * @return the fan-in
+     */
+    public int getFanIn() {
+        return fanIn;
+    }
+
+    /**
+     * Sorts a file of whitespace-separated integers into another file, one integer per line.
+     * As with ArrayUtils.fileToArray, reading stops at the first token that is not a valid int.
+     *
+     * @param input the path of the file to be sorted
+     * @param output the path of the sorted file, which is replaced if it exists
+     * @return the number of integers sorted
+     * @throws IOException if a file cannot be read or written
+     */
+    public long sort(Path input, Path output) throws IOException {
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            long count = sort(input, value -> {
+                if (buf.remaining() < 12) // Room for any int and a newline
+                    write(out, buf);
+                ArrayUtils.putDecimal(buf, value);
+                buf.put((byte) '\n');
+            });
+            write(out, buf);
+            return count;
+        }
+    }
+
+    /**
+     * Sorts a file of whitespace-separated integers into a SortedHeap, replacing the contents of the heap.
+     * The sorted values are linked in the order they arrive, so the heap is built in linear time.
+     *
+     * @param input the path of the file to be sorted
+     * @param heap the heap to receive the values
+     * @return the number of integers sorted
+     * @throws IOException if a file cannot be read or written
+     */
+    public long sort(Path input, SortedHeap heap) throws IOException {
+        try (Runs runs = spill(input)) {
+            if (runs.files.isEmpty()) {
+                heap.makeHeap(runs.chunk.length == runs.count ? runs.chunk : Arrays.copyOf(runs.chunk, runs.count));
+                return runs.count;
+            }
+
+            mergeDown(runs);
+            heap.makeHeap(KWayMerge.stream(runs.open(readBufferSize(runs.files.size()))));
+            return heap.size();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Sorts a file of whitespace-separated integers and passes the values to a consumer in ascending order.
+     *
+     * @param input the path of the file to be sorted
+     * @param sink the consumer that receives the values in ascending order
+     * @return the number of integers sorted
+     * @throws IOException if a file cannot be read or written
+     */
+    public long sort(Path input, IntConsumer sink) throws IOException {
+        try (Runs runs = spill(input)) {
+            if (runs.files.isEmpty()) {
+                for (int i = 0; i < runs.count; i++)
+                    sink.accept(runs.chunk[i]);
+                return runs.count;
+            }
+
+            mergeDown(runs);
+            return KWayMerge.merge(runs.open(readBufferSize(runs.files.size())), sink);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parses the input into chunks, and sorts and spills every chunk to a run file.
+     * If the whole input fits in one chunk, it is left sorted in memory instead.
+     * The chunk is sized for the length of the input, since every value takes at least two bytes of text,
+     * and grows up to the memory budget if the input turns out longer, as a pipe may.
+     *
+     * @param input the path of the file to be sorted
+     * @return the runs, which the caller must close
+     * @throws IOException if a file cannot be read or written
+     */
+    private Runs spill(Path input) throws IOException {
+        // The chunk gets at most the budget, less the write buffer
+        long chunkLimit = Math.min((memoryBudget - WRITE_BUFFER_SIZE) / Integer.BYTES, Integer.MAX_VALUE - 8);
+        long expected = Math.max(Files.size(input) / 2 + 1, MIN_CHUNK_SIZE);
+        Runs runs = new Runs(new int[(int) Math.min(expected, chunkLimit)]);
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            ArrayUtils.readInts(in, value -> {
+                if (runs.count == runs.chunk.length) { // The chunk is full
+                    if (runs.chunk.length < chunkLimit) {
+                        runs.chunk = Arrays.copyOf(runs.chunk, (int) Math.min(2L * runs.chunk.length, chunkLimit));
+                    } else {
+                        ArrayUtils.mergeSort(runs.chunk, 0, runs.count);
+                        runs.spillChunk();
+                    }
+                }
+                runs.chunk[runs.count++] = value;
+            });
+
+            ArrayUtils.mergeSort(runs.chunk, 0, runs.count);
+            if (!runs.files.isEmpty()) { // Only the last chunk is left
+                runs.spillChunk();
+                runs.chunk = null; // Leave the memory to the merge buffers
+            }
+            return runs;
+        } catch (UncheckedIOException e) {
+            runs.close();
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            runs.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Merges groups of runs into longer runs until no more than fanIn runs are left.
+     * Every run written is registered with the runs before it is written, so closing the runs deletes it
+     * even if a later merge fails.
+     *
+     * @param runs the runs, which are replaced by the merged runs
+     * @throws IOException if a file cannot be read or written
+     */
+    private void mergeDown(Runs runs) throws IOException {
+        int bufferSize = readBufferSize(fanIn);
+        while (runs.files.size() > fanIn) {
+            List<Path> merged = runs.merged;
+            for (int from = 0; from < runs.files.size(); from += fanIn) {
+                List<Path> group = runs.files.subList(from, Math.min(from + fanIn, runs.files.size()));
+                if (group.size() == 1) { // Nothing to merge it with
+                    merged.add(group.get(0));
+                    continue;
+                }
+
+                List<RunReader> readers = open(group, bufferSize);
+                try (RunWriter writer = new RunWriter(tempDir)) {
+                    merged.add(writer.path);
+                    KWayMerge.merge(readers, writer);
+                } finally {
+                    close(readers);
+                }
+                for (Path run : group)
+                    Files.deleteIfExists(run);
+            }
+            runs.files.clear();
+            runs.files.addAll(merged);
+            merged.clear();
+        }
+    }
+
+    /**
+     * Returns the read buffer size that lets the specified number of runs be merged within the memory budget.
+     *
+     * @param readers the number of runs read at once
+     * @return the size of each read buffer in bytes, a multiple of 4
+     */
+    private int readBufferSize(int readers) {
+        long size = (memoryBudget - WRITE_BUFFER_SIZE) / readers;
+        size = Math.max(MIN_BUFFER_SIZE, Math.min(size, MAX_BUFFER_SIZE));
+        return (int) size & ~(Integer.BYTES - 1);
+    }
+
+    /**
+     * Opens a reader on each of the specified runs.
+     *
+     * @param files the paths of the run files
+     * @param bufferSize the size of each read buffer in bytes
+     * @return the readers, in the order of the files
+     * @throws IOException if a file cannot be opened
+     */
+    private static List<RunReader> open(List<Path> files, int bufferSize) throws IOException {
+        List<RunReader> readers = new ArrayList<>(files.size());
+        try {
+            for (Path file : files)
+                readers.add(new RunReader(file, bufferSize));
+        } catch (IOException e) {
+            close(readers);
+            throw e;
+        }
+        return readers;
+    }
+
+    /**
+     * Closes every reader of a list, even if closing one of them fails.
+     *
+     * @param readers the readers to be closed
+     * @throws IOException if a reader cannot be closed
+     */
+    private static void close(List<RunReader> readers) throws IOException {
+        IOException failure = null;
+        for (RunReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Writes the contents of a buffer to a channel and clears the buffer.
+     *
+     * @param channel the channel to write to
+     * @param buf the buffer holding the bytes to be written
+     * @throws UncheckedIOException if the channel cannot be written
+     */
+    private static void write(FileChannel channel, ByteBuffer buf) {
+        buf.flip();
+        try {
+            while (buf.hasRemaining())
+                channel.write(buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buf.clear();
+    }
+
+    /**
+     * The state of one sort: the chunk being filled, the run files spilled so far,
+     * and the readers opened on them for the final merge. Closing it deletes every run file.
+     */
+    private final class Runs implements Closeable {
+        int[] chunk;   // The values parsed since the last spill, or null once every value is spilled
+        int count = 0; // The number of values in the chunk
+        final List<Path> files = new ArrayList<>();
+        final List<Path> merged = new ArrayList<>(); // The runs written by the current merge pass, which replace files
+        private List<RunReader> readers = new ArrayList<>();
+
+        Runs(int[] chunk) {
+            this.chunk = chunk;
+        }
+
+        /**
+         * Writes the sorted chunk to a new run file and empties the chunk.
+         *
+         * @throws UncheckedIOException if the run file cannot be written
+         */
+        void spillChunk() {
+            try (RunWriter writer = new RunWriter(tempDir)) {
+                files.add(writer.path);
+                for (int i = 0; i < count; i++)
+                    writer.accept(chunk[i]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count = 0;
+        }
+
+        /**
+         * Opens a reader on every run file, to be closed with the runs.
+         *
+         * @param bufferSize the size of each read buffer in bytes
+         * @return the readers, in the order of the files
+         * @throws IOException if a file cannot be opened
+         */
+        List<RunReader> open(int bufferSize) throws IOException {
+            readers = ExternalSort.open(files, bufferSize);
+            return readers;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                ExternalSort.close(readers);
+            } finally {
+                for (Path file : files)
+                    Files.deleteIfExists(file);
+                for (Path file : merged)
+                    Files.deleteIfExists(file);
+                files.clear();
+                merged.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a run of ints to a new temporary file through a buffer.
+     */
+    private static final class RunWriter implements IntConsumer, Closeable {
+        final Path path;
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        RunWriter(Path dir) throws IOException {
+            path = Files.createTempFile(dir, "heap-run-", ".bin");
+            try {
+                channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            } catch (IOException e) { // The caller never learns the path, so delete the file here
+                Files.deleteIfExists(path);
+                throw e;
+            }
+        }
+
+        @Override
+        public void accept(int value) {
+            if (!buf.hasRemaining())
+                write(channel, buf);
+            buf.putInt(value);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                write(channel, buf);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a run of ints from a file through a buffer.
+     */
+    private static final class RunReader implements PrimitiveIterator.OfInt, Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+
+        RunReader(Path path, int bufferSize) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            buf = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+            buf.limit(0); // Nothing read yet
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (buf.hasRemaining())
+                return true;
+
+            buf.clear();
+            try {
+                while (buf.position() == 0 || buf.position() % Integer.BYTES != 0) { // Read whole ints only
+                    if (channel.read(buf) < 0)
+                        break;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buf.flip();
+            return buf.remaining() >= Integer.BYTES;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return buf.getInt();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -1,7 +1,58 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
 /**
  * The Heap class represents a generic heap data structure with common operations.
  */
 public class Heap {
+    private static final int SORT_BATCH_SIZE = 1 << 12;    // The number of values drained at once when sorting
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;  // Sorted output is written 64 KB at a time
+    private static final int MAX_PRESIZE = 1 << 20;        // The largest string builder allocated up front by toString
+    private static final int PARALLEL_BUILD_THRESHOLD = 1 << 16; // makeHeap splits inputs at least this long across the pool
+    protected static final int PARALLEL_CHUNK_SIZE = 1 << 13;    // The number of elements each parallel build task works on
+
+    private HeapMetrics metrics; // The metrics of the InstrumentedHeap wrapping this heap, or null
+
+    /**
+     * Makes the heap report the work done inside its operations to the specified metrics.
+     * Called by InstrumentedHeap.
+     *
+     * @param metrics the metrics to report to, or null to stop reporting
+     */
+    void attachMetrics(HeapMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Reports work done inside an operation to the attached metrics.
+     * Unless HeapMetrics.ENABLED is set the call does nothing, and the JIT removes it along with the counting around it.
+     *
+     * @param comparisons the number of key comparisons
+     * @param visits the number of nodes or slots visited
+     */
+    protected final void recordWork(long comparisons, long visits) {
+        if (HeapMetrics.ENABLED && metrics != null)
+            metrics.addWork(comparisons, visits);
+    }
+
+    /**
+     * Returns whether makeHeap should split an input across the common ForkJoin pool.
+     *
+     * @param n the number of elements to be built into a heap
+     * @return true if the input is large enough and the pool has more than one thread
+     */
+    protected static boolean buildInParallel(long n) {
+        return n >= PARALLEL_BUILD_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
 
     /**
      * Transforms an array into a heap.
@@ -12,6 +63,41 @@ public class Heap {
         // Method implementation
     }
 
+    /**
+     * Transforms a stream of integers into a heap, without first collecting the stream into an array.
+     * By default the heap is cleared and each value is inserted as it arrives.
+     *
+     * @param values the stream of integers to be transformed into a heap
+     */
+    public void makeHeap(IntStream values) {
+        makeHeap(new int[0]);
+        values.sequential().forEachOrdered(this::insert);
+    }
+
+    /**
+     * Transforms whitespace-separated integers read from an input stream into a heap,
+     * without first collecting them into an array.
+     *
+     * @param in the input stream to read from
+     * @throws IOException if the stream cannot be read
+     */
+    public void makeHeap(InputStream in) throws IOException {
+        makeHeap(Channels.newChannel(in));
+    }
+
+    /**
+     * Transforms whitespace-separated integers read from a channel into a heap,
+     * without first collecting them into an array.
+     * By default the heap is cleared and each value is inserted as it is parsed.
+     *
+     * @param channel the channel to read from
+     * @throws IOException if the channel cannot be read
+     */
+    public void makeHeap(ReadableByteChannel channel) throws IOException {
+        makeHeap(new int[0]);
+        ArrayUtils.readInts(channel, this::insert);
+    }
+
     /**
      * Inserts a new number into the heap.
      *
@@ -21,6 +107,98 @@ public class Heap {
         // Method implementation
     }
 
+    /**
+     * Inserts a batch of numbers into the heap.
+     * By default each number is inserted on its own.
+     *
+     * @param values the array holding the numbers to be inserted
+     * @param off the index of the first number in the array
+     * @param len the number of numbers to be inserted
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     */
+    public void insertAll(int[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        for (int i = off; i < off + len; i++)
+            insert(values[i]);
+    }
+
+    /**
+     * Inserts a number into the heap and returns a handle to it, for use with decreaseKey and delete.
+     * A handle stays valid until its element is extracted or deleted, or the heap is rebuilt with makeHeap;
+     * after a union it belongs to the heap that received the elements.
+     *
+     * @param num the number to be inserted into the heap
+     * @return the handle of the number
+     * @throws UnsupportedOperationException if the heap does not support handles
+     */
+    public HeapHandle insertHandle(int num) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support handles");
+    }
+
+    /**
+     * Lowers the value of an element of the heap.
+     *
+     * @param handle the handle of the element, as returned by insertHandle
+     * @param newValue the new value, which must not be greater than the current one
+     * @throws IllegalArgumentException if the new value is greater than the current one,
+     *                                  or the handle was not returned by this heap
+     * @throws UnsupportedOperationException if the heap does not support handles
+     */
+    public void decreaseKey(HeapHandle handle, int newValue) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support handles");
+    }
+
+    /**
+     * Removes an element from the heap.
+     *
+     * @param handle the handle of the element, as returned by insertHandle
+     * @throws IllegalArgumentException if the handle was not returned by this heap
+     * @throws UnsupportedOperationException if the heap does not support handles
+     */
+    public void delete(HeapHandle handle) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support handles");
+    }
+
+    /**
+     * Checks that a new value for an element is not greater than its current value.
+     *
+     * @param handle the handle of the element
+     * @param newValue the new value
+     * @throws IllegalArgumentException if the new value is greater than the current one
+     */
+    protected static void checkDecrease(HeapHandle handle, int newValue) {
+        if (newValue > handle.getValue())
+            throw new IllegalArgumentException("New value " + newValue + " is greater than the current value " + handle.getValue());
+    }
+
+    /**
+     * Checks that a handle is a node still held by a heap, for the heaps that use their nodes as handles.
+     *
+     * @param handle the handle
+     * @param owner the current owner of the heap
+     * @return the handle as a Node
+     * @throws IllegalArgumentException if the handle is not a Node, or its element was removed from the heap
+     *                                  or belongs to another heap
+     */
+    protected Node nodeOf(HeapHandle handle, NodeOwner owner) {
+        if (handle instanceof Node) {
+            Node node = (Node) handle;
+            if (node.getOwner() != null && node.getOwner().resolve() == owner)
+                return node;
+        }
+        throw new IllegalArgumentException("Not a handle of an element of this " + getClass().getSimpleName() + ": "
+                + handle.getClass().getSimpleName());
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return the number of elements in the heap
+     */
+    public long size() {
+        return 0; // Replace with actual implementation
+    }
+
     /**
      * Retrieves the minimum value from the heap without removing it.
      *
@@ -39,6 +217,77 @@ public class Heap {
         return 0; // Replace with actual implementation
     }
 
+    /**
+     * Passes each element of the heap to an action, in the order the heap stores them, without removing them.
+     *
+     * @param action the action to be performed on each element
+     */
+    public void forEachValue(IntConsumer action) {
+        // Method implementation
+    }
+
+    /**
+     * Writes the elements of the heap to an Appendable in the form [1, 2, 3], in the order the heap stores them.
+     * With a preview size, only the first and last elements are written, followed by the number of elements.
+     *
+     * @param out the destination of the text
+     * @param preview the number of elements to show at each end, or HeapRenderer.FULL to show all of them
+     * @throws IOException if the destination cannot be written
+     */
+    public void appendTo(Appendable out, int preview) throws IOException {
+        HeapRenderer renderer = new HeapRenderer(out, preview);
+        try {
+            forEachValue(renderer);
+            renderer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns a string representation of the heap, listing all of its elements.
+     *
+     * @return a string representation of the heap
+     */
+    @Override
+    public String toString() {
+        return toString(HeapRenderer.FULL);
+    }
+
+    /**
+     * Returns a string representation of the heap, listing only the first and last elements of a large heap.
+     *
+     * @param preview the number of elements to show at each end, or HeapRenderer.FULL to show all of them
+     * @return a string representation of the heap
+     */
+    public String toString(int preview) {
+        long elements = preview < 0 ? size() : Math.min(size(), 2L * preview);
+        StringBuilder str = new StringBuilder((int) Math.min(elements * 8 + 32, MAX_PRESIZE));
+        try {
+            appendTo(str, preview);
+        } catch (IOException e) { // A StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return str.toString();
+    }
+
+    /**
+     * Extracts and removes the k smallest values from the heap, in ascending order.
+     * By default the minimum is extracted k times.
+     *
+     * @param dest the array to receive the values, starting at index 0
+     * @param k the number of values to be extracted
+     * @return the number of values extracted, which is less than k if the heap holds fewer values
+     * @throws IndexOutOfBoundsException if k is negative or greater than the length of the array
+     */
+    public int drainMin(int[] dest, int k) {
+        Objects.checkFromIndexSize(0, k, dest.length);
+        int n = (int) Math.min(k, size());
+        for (int i = 0; i < n; i++)
+            dest[i] = extractMin();
+        return n;
+    }
+
     /**
      * Merges the current heap with another heap.
      *
@@ -49,9 +298,98 @@ public class Heap {
     }
 
     /**
-     * Sorts the elements in the heap.
+     * Prints the elements of the heap in sorted order to the console, in the form [1, 2, 3].
+     * At the end, the heap is empty.
      */
     public void sortHeap() {
-        // Method implementation
+        try {
+            sortHeap(Channels.newChannel(System.out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.flush();
+    }
+
+    /**
+     * Passes the elements of the heap to a consumer in sorted order.
+     * By default the elements are drained in batches with drainMin.
+     * At the end, the heap is empty.
+     *
+     * @param sink the consumer that receives the elements in ascending order
+     */
+    public void sortHeap(IntConsumer sink) {
+        int[] batch = new int[SORT_BATCH_SIZE];
+        int n;
+        while ((n = drainMin(batch, batch.length)) > 0) {
+            for (int i = 0; i < n; i++)
+                sink.accept(batch[i]);
+        }
+    }
+
+    /**
+     * Writes the elements of the heap in sorted order to a channel as text, in the form [1, 2, 3] followed by a newline.
+     * The text is formatted into a buffer and written in large blocks.
+     * At the end, the heap is empty.
+     *
+     * @param channel the channel to write to
+     * @throws IOException if the channel cannot be written
+     */
+    public void sortHeap(WritableByteChannel channel) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        buf.put((byte) '[');
+        try {
+            sortHeap(new IntConsumer() {
+                private boolean first = true;
+
+                @Override
+                public void accept(int value) {
+                    if (buf.remaining() < 16) // Room for a separator and any int
+                        flush(channel, buf);
+                    if (!first)
+                        buf.put((byte) ',').put((byte) ' ');
+                    first = false;
+                    ArrayUtils.putDecimal(buf, value);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        buf.put((byte) ']').put((byte) '\n');
+        flush(channel, buf);
+    }
+
+    /**
+     * Returns the elements of the heap in sorted order.
+     * At the end, the heap is empty.
+     *
+     * @return an array of the elements in ascending order
+     * @throws IllegalStateException if the heap holds more elements than an array can
+     */
+    public int[] sortHeapToArray() {
+        long size = size();
+        if (size > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("Heap too large for an array: " + size + " elements");
+
+        int[] arr = new int[(int) size];
+        drainMin(arr, arr.length);
+        return arr;
+    }
+
+    /**
+     * Writes the contents of a buffer to a channel and clears the buffer.
+     *
+     * @param channel the channel to write to
+     * @param buf the buffer holding the bytes to be written
+     * @throws UncheckedIOException if the channel cannot be written
+     */
+    private static void flush(WritableByteChannel channel, ByteBuffer buf) {
+        buf.flip();
+        try {
+            while (buf.hasRemaining())
+                channel.write(buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buf.clear();
     }
 }
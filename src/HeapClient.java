@@ -0,0 +1,441 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * The HeapClient class is a blocking client of HeapServer.
+ * <p>
+ * Each operation has a send method, which only queues the request, and a convenience method that sends the request
+ * and waits for its response. To pipeline requests, call several send methods and then receive each response in order;
+ * the queued requests are written together when the first response is received, or when flush is called.
+ * The server stops reading a connection while its responses are not written, so while the socket is too full
+ * to take more requests, the client reads the responses that have arrived and keeps them until they are received;
+ * a pipeline of any depth therefore makes progress, at the cost of buffering its responses.
+ * A client must not be used by several threads at once.
+ */
+public class HeapClient implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16; // The initial size of the buffers
+
+    private final SocketChannel channel;
+    private final Selector selector;                 // Waits for the non-blocking channel to be readable or writable
+    private final SelectionKey key;                  // The registration of the channel with the selector
+    private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN); // Ready to be written to
+    private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);  // Ready to be read from
+    private int frameStart;                          // The position in out of the request being queued
+
+    /**
+     * Connects to a server.
+     *
+     * @param address the address of the server, an InetSocketAddress or a UnixDomainSocketAddress
+     * @throws IOException if the connection fails
+     */
+    public HeapClient(SocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        try {
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            key = channel.register(selector, 0);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        in.limit(0);
+    }
+
+    /**
+     * Waits until the channel is ready for some of the specified operations.
+     *
+     * @param ops the operations to wait for, as a set of SelectionKey bits
+     * @return the operations the channel is ready for
+     * @throws IOException if the selector fails
+     */
+    private int await(int ops) throws IOException {
+        key.interestOps(ops);
+        selector.select();
+        selector.selectedKeys().clear();
+        return key.readyOps();
+    }
+
+    /**
+     * Reads whatever the server has sent without blocking, appending it to the unread responses.
+     * The input buffer grows as needed, so the server never waits for the client to receive.
+     *
+     * @throws IOException if the connection fails or is closed by the server
+     */
+    private void readAvailable() throws IOException {
+        in.compact();
+        in = HeapServer.ensure(in, 1);
+        int n = channel.read(in);
+        in.flip();
+        if (n < 0)
+            throw new IOException("Connection closed by the server");
+    }
+
+    /**
+     * Starts queuing a request.
+     *
+     * @param op the opcode of the request
+     * @param name the name of the heap
+     * @param argBytes the number of bytes of the arguments
+     * @throws IllegalArgumentException if the name is longer than 255 bytes
+     */
+    private void begin(byte op, String name, int argBytes) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 255)
+            throw new IllegalArgumentException("Heap name longer than 255 bytes: " + name);
+        out = HeapServer.ensure(out, Integer.BYTES + 2 + bytes.length + argBytes);
+        frameStart = out.position();
+        out.position(frameStart + Integer.BYTES); // The length is filled in by end
+        out.put(op).put((byte) bytes.length).put(bytes);
+    }
+
+    /**
+     * Finishes queuing a request by filling in its length.
+     */
+    private void end() {
+        out.putInt(frameStart, out.position() - frameStart - Integer.BYTES);
+    }
+
+    /**
+     * Queues a request that has only a name.
+     *
+     * @param op the opcode of the request
+     * @param name the name of the heap
+     */
+    private void send(byte op, String name) {
+        begin(op, name, 0);
+        end();
+    }
+
+    /**
+     * Queues a request holding an array of values.
+     *
+     * @param op the opcode of the request
+     * @param name the name of the heap
+     * @param values the array holding the values
+     * @param off the index of the first value
+     * @param len the number of values
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     */
+    private void send(byte op, String name, int[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        if (len > (HeapServer.MAX_FRAME - 512) / Integer.BYTES)
+            throw new IllegalArgumentException("Too many values for one request: " + len);
+        begin(op, name, Integer.BYTES * (len + 1));
+        out.putInt(len);
+        out.asIntBuffer().put(values, off, len);
+        out.position(out.position() + len * Integer.BYTES);
+        end();
+    }
+
+    /**
+     * Queues a request to create an empty heap.
+     *
+     * @param name the name of the new heap
+     * @param implementation the number of the heap implementation, as listed in the main menu
+     */
+    public void sendCreate(String name, int implementation) {
+        begin(HeapServer.CREATE, name, 1);
+        out.put((byte) implementation);
+        end();
+    }
+
+    /**
+     * Queues a request to remove a heap.
+     *
+     * @param name the name of the heap
+     */
+    public void sendDrop(String name) {
+        send(HeapServer.DROP, name);
+    }
+
+    /**
+     * Queues a request to rebuild a heap from an array of values.
+     *
+     * @param name the name of the heap
+     * @param values the values of the heap
+     */
+    public void sendMake(String name, int[] values) {
+        send(HeapServer.MAKE, name, values, 0, values.length);
+    }
+
+    /**
+     * Queues a request to insert a batch of values into a heap.
+     *
+     * @param name the name of the heap
+     * @param values the array holding the values
+     * @param off the index of the first value
+     * @param len the number of values
+     */
+    public void sendInsert(String name, int[] values, int off, int len) {
+        send(HeapServer.INSERT, name, values, off, len);
+    }
+
+    /**
+     * Queues a request to insert one value into a heap.
+     *
+     * @param name the name of the heap
+     * @param value the value to be inserted
+     */
+    public void sendInsert(String name, int value) {
+        begin(HeapServer.INSERT, name, 2 * Integer.BYTES);
+        out.putInt(1).putInt(value);
+        end();
+    }
+
+    /**
+     * Queues a request for the minimum of a heap.
+     *
+     * @param name the name of the heap
+     */
+    public void sendMin(String name) {
+        send(HeapServer.MIN, name);
+    }
+
+    /**
+     * Queues a request to extract the minimum of a heap.
+     *
+     * @param name the name of the heap
+     */
+    public void sendExtract(String name) {
+        send(HeapServer.EXTRACT, name);
+    }
+
+    /**
+     * Queues a request to extract the k smallest values of a heap.
+     *
+     * @param name the name of the heap
+     * @param k the number of values to be extracted
+     */
+    public void sendDrain(String name, int k) {
+        begin(HeapServer.DRAIN, name, Integer.BYTES);
+        out.putInt(k);
+        end();
+    }
+
+    /**
+     * Queues a request for the size of a heap.
+     *
+     * @param name the name of the heap
+     */
+    public void sendSize(String name) {
+        send(HeapServer.SIZE, name);
+    }
+
+    /**
+     * Queues a request to merge a heap into another.
+     *
+     * @param name the name of the heap that receives the values
+     * @param other the name of the heap that is merged into it
+     */
+    public void sendUnion(String name, String other) {
+        byte[] bytes = other.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 255)
+            throw new IllegalArgumentException("Heap name longer than 255 bytes: " + other);
+        begin(HeapServer.UNION, name, 1 + bytes.length);
+        out.put((byte) bytes.length).put(bytes);
+        end();
+    }
+
+    /**
+     * Writes all queued requests to the server.
+     * Whenever the socket is full, the responses that have arrived are read meanwhile, so the server can go on.
+     *
+     * @throws IOException if the connection fails
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            if (channel.write(out) > 0)
+                continue;
+            if ((await(SelectionKey.OP_READ | SelectionKey.OP_WRITE) & SelectionKey.OP_READ) != 0)
+                readAvailable();
+        }
+        out.clear();
+    }
+
+    /**
+     * Waits for the response to the oldest request not yet answered, flushing queued requests first.
+     *
+     * @return the result of the request, which stays valid until the next call to receive
+     * @throws IOException if the connection fails
+     * @throws IllegalArgumentException if the server reports that the request failed
+     */
+    public ByteBuffer receive() throws IOException {
+        if (out.position() > 0)
+            flush();
+
+        fill(Integer.BYTES);
+        int length = in.getInt();
+        if (length < 1 || length > HeapServer.MAX_FRAME)
+            throw new IOException("Invalid frame length: " + length);
+        fill(length);
+        ByteBuffer response = in.slice(in.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+        in.position(in.position() + length);
+
+        if (response.get() == HeapServer.ERROR) {
+            throw new IllegalArgumentException(new String(response.array(),
+                    response.arrayOffset() + response.position(), response.remaining(), StandardCharsets.UTF_8));
+        }
+        return response;
+    }
+
+    /**
+     * Reads from the server until the input buffer holds at least the specified number of bytes.
+     *
+     * @param bytes the number of bytes needed
+     * @throws IOException if the connection fails or is closed by the server
+     */
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes)
+            return;
+
+        if (in.capacity() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            larger.put(in);
+            in = larger;
+        } else {
+            in.compact();
+        }
+        while (in.position() < bytes) {
+            int n = channel.read(in);
+            if (n < 0)
+                throw new IOException("Connection closed by the server");
+            if (n == 0) // Nothing has arrived yet
+                await(SelectionKey.OP_READ);
+        }
+        in.flip();
+    }
+
+    /**
+     * Creates an empty heap on the server.
+     *
+     * @param name the name of the new heap
+     * @param implementation the number of the heap implementation, as listed in the main menu
+     * @throws IOException if the connection fails
+     */
+    public void create(String name, int implementation) throws IOException {
+        sendCreate(name, implementation);
+        receive();
+    }
+
+    /**
+     * Removes a heap from the server.
+     *
+     * @param name the name of the heap
+     * @throws IOException if the connection fails
+     */
+    public void drop(String name) throws IOException {
+        sendDrop(name);
+        receive();
+    }
+
+    /**
+     * Rebuilds a heap from an array of values.
+     *
+     * @param name the name of the heap
+     * @param values the values of the heap
+     * @throws IOException if the connection fails
+     */
+    public void makeHeap(String name, int[] values) throws IOException {
+        sendMake(name, values);
+        receive();
+    }
+
+    /**
+     * Inserts a value into a heap.
+     *
+     * @param name the name of the heap
+     * @param value the value to be inserted
+     * @throws IOException if the connection fails
+     */
+    public void insert(String name, int value) throws IOException {
+        sendInsert(name, value);
+        receive();
+    }
+
+    /**
+     * Returns the minimum of a heap.
+     *
+     * @param name the name of the heap
+     * @return the minimum value, or Integer.MAX_VALUE if the heap is empty
+     * @throws IOException if the connection fails
+     */
+    public int getMinVal(String name) throws IOException {
+        sendMin(name);
+        return receive().getInt();
+    }
+
+    /**
+     * Extracts the minimum of a heap.
+     *
+     * @param name the name of the heap
+     * @return the minimum value, or Integer.MAX_VALUE if the heap is empty
+     * @throws IOException if the connection fails
+     */
+    public int extractMin(String name) throws IOException {
+        sendExtract(name);
+        return receive().getInt();
+    }
+
+    /**
+     * Extracts the k smallest values of a heap, in ascending order.
+     *
+     * @param name the name of the heap
+     * @param k the number of values to be extracted
+     * @return the values, fewer than k if the heap holds fewer values
+     * @throws IOException if the connection fails
+     */
+    public int[] drainMin(String name, int k) throws IOException {
+        sendDrain(name, k);
+        ByteBuffer result = receive();
+        int[] values = new int[result.getInt()];
+        result.asIntBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Returns the size of a heap.
+     *
+     * @param name the name of the heap
+     * @return the number of values in the heap
+     * @throws IOException if the connection fails
+     */
+    public long size(String name) throws IOException {
+        sendSize(name);
+        return receive().getLong();
+    }
+
+    /**
+     * Merges a heap into another.
+     *
+     * @param name the name of the heap that receives the values
+     * @param other the name of the heap that is merged into it
+     * @throws IOException if the connection fails
+     */
+    public void unionHeap(String name, String other) throws IOException {
+        sendUnion(name, other);
+        receive();
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException if the connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            selector.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
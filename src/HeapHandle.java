@@ -0,0 +1,16 @@
+/**
+ * The HeapHandle interface represents an element of a heap, as returned by Heap.insertHandle,
+ * for use with decreaseKey and delete.
+ * <p>
+ * A handle is opaque: each heap implementation has its own handle class, and only accepts the handles it returned.
+ * The linked heaps use their nodes as handles, while an IntArrayHeap tracks where each handle's element is in its array.
+ */
+public interface HeapHandle {
+    /**
+     * Returns the current value of the element.
+     * The result is unspecified once the element has been extracted or deleted.
+     *
+     * @return the value of the element
+     */
+    int getValue();
+}
@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The HeapLoadGenerator class measures the throughput and latency of a HeapServer on the same machine.
+ * <p>
+ * It fills a heap on the server, then sends a random mix of inserts, extractions and minimum queries
+ * in pipelined batches: each batch is written at once, and the latency of a request is the time from
+ * the write of its batch to the arrival of its response.
+ */
+public class HeapLoadGenerator {
+    private static final int INSERT_PERCENT = 50;  // The share of inserts in the mix
+    private static final int EXTRACT_PERCENT = 40; // The share of extractions, the rest being minimum queries
+    private static final int MAX_DEPTH = 1 << 20;  // The largest pipeline depth, whose responses the client buffers
+
+    /**
+     * Runs the load against a server and prints a report.
+     *
+     * @param address the address of the server
+     * @param requests the number of requests to be sent after the heap is filled
+     * @param depth the number of requests in each pipelined batch
+     * @param implementation the number of the heap implementation, as listed in the main menu
+     * @param heapSize the number of values the heap is filled with
+     * @throws IOException if the connection fails
+     * @throws IllegalArgumentException if the depth is not between 1 and 2^20
+     */
+    public static void run(SocketAddress address, int requests, int depth, int implementation, int heapSize)
+            throws IOException {
+        if (depth < 1 || depth > MAX_DEPTH)
+            throw new IllegalArgumentException("Pipeline depth must be between 1 and " + MAX_DEPTH + ", got " + depth);
+
+        SplittableRandom random = new SplittableRandom(42);
+        String name = "load-" + ProcessHandle.current().pid();
+        LatencyHistogram latency = new LatencyHistogram();
+        long checksum = 0; // Combines every value returned, so results can be compared between implementations
+
+        try (HeapClient client = new HeapClient(address)) {
+            client.create(name, implementation);
+            client.makeHeap(name, random.ints(heapSize).toArray());
+
+            byte[] ops = new byte[depth];
+            long begin = System.nanoTime();
+            for (int sent = 0; sent < requests; sent += depth) {
+                int batch = Math.min(depth, requests - sent);
+                for (int i = 0; i < batch; i++) {
+                    int p = random.nextInt(100);
+                    if (p < INSERT_PERCENT) {
+                        client.sendInsert(name, random.nextInt());
+                        ops[i] = HeapServer.INSERT;
+                    } else if (p < INSERT_PERCENT + EXTRACT_PERCENT) {
+                        client.sendExtract(name);
+                        ops[i] = HeapServer.EXTRACT;
+                    } else {
+                        client.sendMin(name);
+                        ops[i] = HeapServer.MIN;
+                    }
+                }
+
+                long start = System.nanoTime();
+                client.flush();
+                for (int i = 0; i < batch; i++) {
+                    if (ops[i] == HeapServer.INSERT)
+                        client.receive();
+                    else
+                        checksum = checksum * 31 + client.receive().getInt();
+                    latency.record(System.nanoTime() - start);
+                }
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            long size = client.size(name);
+            client.drop(name);
+
+            System.out.printf("%d requests in batches of %d in %.3f ms: %.0f requests/sec%n", requests, depth,
+                    elapsed / 1e6, elapsed == 0 ? 0.0 : requests * 1e9 / elapsed);
+            System.out.println("latency " + latency);
+            System.out.println("Final heap size: " + size);
+            System.out.println("Checksum: " + checksum);
+        }
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args the server address, a loopback TCP port (7379 by default) or --unix followed by a socket path,
+     *             then optionally the number of requests (1000000), the pipeline depth (64),
+     *             the heap implementation (1) and the initial heap size (1000)
+     * @throws IOException if the connection fails
+     */
+    public static void main(String[] args) throws IOException {
+        int skip = args.length > 0 && args[0].equals("--unix") ? 2 : Math.min(args.length, 1);
+        SocketAddress address = HeapServer.parseAddress(args);
+        int[] options = {1_000_000, 64, 1, 1000};
+        String[] rest = Arrays.copyOfRange(args, Math.min(skip, args.length), args.length);
+        if (rest.length > options.length) {
+            System.err.println("Usage: java HeapLoadGenerator [port | --unix path] [requests] [depth] [implementation] [heap size]");
+            System.exit(2);
+        }
+        for (int i = 0; i < rest.length; i++) {
+            options[i] = Integer.parseInt(rest[i]);
+            if (options[i] < (i == 3 ? 0 : 1)) { // Only the heap may start empty
+                System.err.println("Not a valid count: " + rest[i]);
+                System.exit(2);
+            }
+        }
+        if (options[1] > MAX_DEPTH) {
+            System.err.println("Pipeline depth must be at most " + MAX_DEPTH + ", got " + options[1]);
+            System.exit(2);
+        }
+        run(address, options[0], options[1], options[2], options[3]);
+    }
+}
@@ -0,0 +1,282 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The HeapMetrics class collects what an instrumented heap does: a count and a latency histogram per operation,
+ * the size of the heap and its high-water mark, and the number of comparisons and node visits made inside the heap.
+ * It can be published as a JMX MBean under "heap:type=HeapMetrics,name=...".
+ * <p>
+ * Operation counts, latencies and gauges are recorded by an InstrumentedHeap wrapped around a heap.
+ * Comparisons and node visits are counted in the inner loops of the heaps themselves, so they are only compiled in
+ * when the JVM is started with -Dheap.metrics=true; otherwise the checks are constant false and the JIT removes them.
+ */
+public class HeapMetrics implements HeapMetricsMBean {
+    /** Whether the comparison and node-visit counters are enabled, from the heap.metrics system property. */
+    public static final boolean ENABLED = Boolean.getBoolean("heap.metrics");
+
+    /**
+     * The operations that are counted and timed.
+     */
+    public enum Operation {
+        MAKE_HEAP, INSERT, INSERT_ALL, GET_MIN, EXTRACT_MIN, DRAIN_MIN, DECREASE_KEY, DELETE, UNION, SORT
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LongAdder[] counts = new LongAdder[OPERATIONS.length]; // The number of calls of each operation
+    private final LongAdder[] elements = new LongAdder[OPERATIONS.length]; // The number of elements handled by the calls
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder nodeVisits = new LongAdder();
+    private volatile long size;                              // The size of the heap after the last operation
+    private final AtomicLong highWaterMark = new AtomicLong(); // The largest size seen
+    private ObjectName name; // The name the metrics are registered under, or null
+
+    /**
+     * Constructs empty metrics.
+     */
+    public HeapMetrics() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            counts[i] = new LongAdder();
+            elements[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records one call of an operation.
+     *
+     * @param operation the operation
+     * @param nanos the duration of the call in nanoseconds
+     */
+    public void record(Operation operation, long nanos) {
+        record(operation, nanos, 1);
+    }
+
+    /**
+     * Records one call of an operation on a batch of elements, as a single latency sample for the whole batch.
+     *
+     * @param operation the operation
+     * @param nanos the duration of the call in nanoseconds
+     * @param elements the number of elements the call handled
+     */
+    public void record(Operation operation, long nanos, long elements) {
+        counts[operation.ordinal()].increment();
+        this.elements[operation.ordinal()].add(elements);
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Adds work done inside the heap.
+     *
+     * @param comparisons the number of key comparisons
+     * @param visits the number of nodes or slots visited
+     */
+    public void addWork(long comparisons, long visits) {
+        this.comparisons.add(comparisons);
+        this.nodeVisits.add(visits);
+    }
+
+    /**
+     * Updates the size gauge and the high-water mark.
+     *
+     * @param size the number of elements in the heap
+     */
+    public void updateSize(long size) {
+        this.size = size;
+        if (size > highWaterMark.get()) // Only contend on the mark when it changes
+            highWaterMark.accumulateAndGet(size, Math::max);
+    }
+
+    /**
+     * Returns the number of calls of an operation.
+     *
+     * @param operation the operation
+     * @return the number of calls
+     */
+    public long getCount(Operation operation) {
+        return counts[operation.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of elements handled by the calls of an operation, one per call except for batches.
+     *
+     * @param operation the operation
+     * @return the number of elements
+     */
+    public long getElementCount(Operation operation) {
+        return elements[operation.ordinal()].sum();
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     *
+     * @param operation the operation
+     * @return the histogram of the durations of its calls
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    @Override
+    public long getMakeHeapCount() {
+        return getCount(Operation.MAKE_HEAP);
+    }
+
+    @Override
+    public long getInsertCount() {
+        return getCount(Operation.INSERT);
+    }
+
+    @Override
+    public long getInsertAllCount() {
+        return getCount(Operation.INSERT_ALL);
+    }
+
+    @Override
+    public long getInsertAllElementCount() {
+        return getElementCount(Operation.INSERT_ALL);
+    }
+
+    @Override
+    public long getGetMinCount() {
+        return getCount(Operation.GET_MIN);
+    }
+
+    @Override
+    public long getExtractMinCount() {
+        return getCount(Operation.EXTRACT_MIN);
+    }
+
+    @Override
+    public long getDrainMinCount() {
+        return getCount(Operation.DRAIN_MIN);
+    }
+
+    @Override
+    public long getDecreaseKeyCount() {
+        return getCount(Operation.DECREASE_KEY);
+    }
+
+    @Override
+    public long getDeleteCount() {
+        return getCount(Operation.DELETE);
+    }
+
+    @Override
+    public long getUnionCount() {
+        return getCount(Operation.UNION);
+    }
+
+    @Override
+    public long getSortCount() {
+        return getCount(Operation.SORT);
+    }
+
+    @Override
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public long getNodeVisits() {
+        return nodeVisits.sum();
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public long getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    /**
+     * Returns a latency percentile of an operation.
+     *
+     * @param operation the name of the operation, such as INSERT or EXTRACT_MIN
+     * @param percentile the percentage, between 0 and 100
+     * @return the latency in nanoseconds
+     * @throws IllegalArgumentException if there is no such operation or the percentage is out of range
+     */
+    @Override
+    public long latencyPercentile(String operation, double percentile) {
+        return getLatency(Operation.valueOf(operation)).getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Returns a report of every counter, gauge and histogram, one per line.
+     *
+     * @return the report
+     */
+    @Override
+    public String dump() {
+        StringBuilder str = new StringBuilder();
+        str.append("size=").append(getSize()).append(" highWaterMark=").append(getHighWaterMark()).append('\n');
+        if (ENABLED)
+            str.append("comparisons=").append(getComparisons()).append(" nodeVisits=").append(getNodeVisits()).append('\n');
+        for (Operation operation : OPERATIONS) {
+            long count = getCount(operation);
+            if (count == 0)
+                continue;
+            str.append(operation);
+            if (getElementCount(operation) != count) // A batch operation
+                str.append(" (").append(getElementCount(operation)).append(" elements)");
+            str.append(": ").append(getLatency(operation)).append('\n');
+        }
+        return str.toString();
+    }
+
+    /**
+     * Resets every counter and histogram. The size gauge is kept, and the high-water mark restarts from it.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            counts[i].reset();
+            elements[i].reset();
+            latencies[i].reset();
+        }
+        comparisons.reset();
+        nodeVisits.reset();
+        highWaterMark.set(size);
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server.
+     *
+     * @param heapName the name of the heap, used in the object name
+     * @throws IllegalStateException if the metrics cannot be registered, for example if the name is taken
+     */
+    public synchronized void register(String heapName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("heap:type=HeapMetrics,name=" + ObjectName.quote(heapName));
+            server.registerMBean(this, objectName);
+            name = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics of " + heapName, e);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if they were published.
+     */
+    public synchronized void unregister() {
+        if (name == null)
+            return;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // Already gone
+        }
+        name = null;
+    }
+}
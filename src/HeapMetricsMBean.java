@@ -0,0 +1,69 @@
+/**
+ * The HeapMetricsMBean interface is the JMX view of a HeapMetrics object.
+ * Counts and latencies are per operation of the instrumented heap, and latencies are in nanoseconds.
+ */
+public interface HeapMetricsMBean {
+    long getMakeHeapCount();
+
+    long getInsertCount();
+
+    long getInsertAllCount();
+
+    /**
+     * @return the number of values inserted by the INSERT_ALL calls
+     */
+    long getInsertAllElementCount();
+
+    long getGetMinCount();
+
+    long getExtractMinCount();
+
+    long getDrainMinCount();
+
+    long getDecreaseKeyCount();
+
+    long getDeleteCount();
+
+    long getUnionCount();
+
+    long getSortCount();
+
+    /**
+     * @return the number of key comparisons made inside the heap, if the counters are enabled
+     */
+    long getComparisons();
+
+    /**
+     * @return the number of nodes or slots visited inside the heap, if the counters are enabled
+     */
+    long getNodeVisits();
+
+    /**
+     * @return the number of elements in the heap after the last operation
+     */
+    long getSize();
+
+    /**
+     * @return the largest number of elements the heap has held
+     */
+    long getHighWaterMark();
+
+    /**
+     * Returns a latency percentile of an operation.
+     *
+     * @param operation the name of the operation, such as INSERT or EXTRACT_MIN
+     * @param percentile the percentage, between 0 and 100
+     * @return the latency in nanoseconds
+     */
+    long latencyPercentile(String operation, double percentile);
+
+    /**
+     * @return a multi-line report of every counter, gauge and histogram
+     */
+    String dump();
+
+    /**
+     * Resets every counter and histogram. The size gauge is kept.
+     */
+    void reset();
+}
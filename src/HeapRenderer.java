@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.IntConsumer;
+
+/**
+ * The HeapRenderer class writes the values of a heap to an Appendable as they are visited, in the form [1, 2, 3].
+ * In preview mode only the first and last N values are written, followed by the total count,
+ * as in [1, 2, 3, ..., 98, 99, 100] (100 elements). The values in between are counted but not kept,
+ * so rendering takes linear time and constant memory.
+ */
+public class HeapRenderer implements IntConsumer {
+    /** The preview size that renders every value. */
+    public static final int FULL = -1;
+
+    private final Appendable out;
+    private final int preview; // The number of values shown at each end, or FULL
+    private final int[] last;  // Ring buffer of the last values seen after the first ones
+    private long count;        // The number of values seen
+
+    /**
+     * Constructs a renderer and writes the opening bracket.
+     *
+     * @param out the destination of the text
+     * @param preview the number of values to show at each end, or FULL to show all values
+     * @throws UncheckedIOException if the destination cannot be written
+     */
+    public HeapRenderer(Appendable out, int preview) {
+        this.out = out;
+        this.preview = preview < 0 ? FULL : preview;
+        this.last = new int[Math.max(this.preview, 0)];
+        this.count = 0;
+        append("[");
+    }
+
+    /**
+     * Renders the next value.
+     *
+     * @param value the value to be rendered
+     * @throws UncheckedIOException if the destination cannot be written
+     */
+    @Override
+    public void accept(int value) {
+        if (preview == FULL || count < preview) { // One of the first values, written right away
+            if (count > 0)
+                append(", ");
+            append(Integer.toString(value));
+        } else if (preview > 0) { // Keep it in case it is one of the last values
+            last[(int) ((count - preview) % preview)] = value;
+        }
+        count++;
+    }
+
+    /**
+     * Writes the remaining values and the closing bracket.
+     *
+     * @throws UncheckedIOException if the destination cannot be written
+     */
+    public void finish() {
+        if (preview != FULL && count > preview) {
+            long rest = count - preview; // The number of values after the first ones
+            int shown = (int) Math.min(rest, preview);
+            if (rest > preview)
+                append(preview > 0 ? ", ..." : "...");
+
+            for (int i = 0; i < shown; i++) {
+                int index = (int) ((rest - shown + i) % preview); // Oldest of the kept values first
+                append(", ");
+                append(Integer.toString(last[index]));
+            }
+
+            append("]");
+            if (rest > preview) // Some values were left out
+                append(" (" + count + " elements)");
+            return;
+        }
+
+        append("]");
+    }
+
+    /**
+     * Appends text to the destination.
+     *
+     * @param text the text to be appended
+     * @throws UncheckedIOException if the destination cannot be written
+     */
+    private void append(CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
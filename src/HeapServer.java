@@ -0,0 +1,462 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The HeapServer class shares named heaps between processes on the same machine.
+ * It serves the heap operations over a binary protocol on a Unix domain socket or a loopback TCP port.
+ * <p>
+ * A single thread runs a non-blocking selector loop and owns the registry of heaps, so the heaps need no locking.
+ * Clients may pipeline requests: every complete request in a read is executed in order,
+ * and the responses are gathered into one buffer that is written back with as few writes as possible.
+ * A connection is not read again until its pending responses have been written.
+ * <p>
+ * Every frame is little-endian and starts with an int holding the length of the rest of the frame.
+ * <pre>
+ * request:  int length, byte opcode, byte name length, name (UTF-8), arguments
+ * response: int length, byte status (OK or ERROR), result, or a UTF-8 message for ERROR
+ *
+ * opcode   arguments              result
+ * CREATE   byte implementation    -         (numbered as in the main menu)
+ * DROP     -                      -
+ * MAKE     int n, n ints          -
+ * INSERT   int n, n ints          -
+ * MIN      -                      int       (Integer.MAX_VALUE if the heap is empty)
+ * EXTRACT  -                      int       (Integer.MAX_VALUE if the heap is empty)
+ * DRAIN    int k                  int n, n ints
+ * SIZE     -                      long
+ * UNION    byte length, name      -         (the named heap is merged into this one)
+ * </pre>
+ */
+public class HeapServer implements Closeable {
+    public static final byte CREATE = 1;
+    public static final byte DROP = 2;
+    public static final byte MAKE = 3;
+    public static final byte INSERT = 4;
+    public static final byte MIN = 5;
+    public static final byte EXTRACT = 6;
+    public static final byte DRAIN = 7;
+    public static final byte SIZE = 8;
+    public static final byte UNION = 9;
+
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+
+    public static final int MAX_FRAME = 1 << 26;      // The largest frame accepted, 64 MB
+    public static final int DEFAULT_PORT = 7379;
+    private static final int BUFFER_SIZE = 1 << 16;   // The initial size of the buffers of each connection
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Path socketFile;                    // The file of a Unix domain socket, deleted on close, or null
+    private final Map<String, Heap> heaps = new HashMap<>(); // The registry, used only by the selector thread
+    private volatile boolean running = true;
+
+    /**
+     * Opens a server on a loopback TCP port or a Unix domain socket.
+     *
+     * @param address the address to listen on, an InetSocketAddress or a UnixDomainSocketAddress
+     * @throws IOException if the server cannot be opened
+     */
+    public HeapServer(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            socketFile = ((UnixDomainSocketAddress) address).getPath();
+        } else {
+            server = ServerSocketChannel.open();
+            socketFile = null;
+        }
+        try {
+            server.bind(address);
+            server.configureBlocking(false);
+            selector = Selector.open();
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the address the server listens on, with the actual port if port 0 was requested.
+     *
+     * @return the local address of the server
+     * @throws IOException if the address cannot be read
+     */
+    public SocketAddress getLocalAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Serves clients on the current thread until stop is called.
+     *
+     * @throws IOException if the selector fails
+     */
+    public void run() throws IOException {
+        while (running) {
+            selector.select();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid())
+                    continue;
+
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isWritable())
+                        connection.write(key);
+                    if (key.isValid() && key.isReadable())
+                        connection.read(key);
+                } catch (IOException e) { // The client went away or sent a malformed frame
+                    key.cancel();
+                    key.channel().close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts a pending client connection, if any.
+     *
+     * @throws IOException if the connection cannot be set up
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    /**
+     * Makes run return after the current round of the selector loop. May be called from any thread.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Closes the server, its client connections and its heaps. Must not be called while run is active.
+     *
+     * @throws IOException if the server cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (SelectionKey key : selector.keys())
+                key.channel().close();
+            selector.close();
+            server.close();
+        } finally {
+            for (Heap heap : heaps.values())
+                release(heap);
+            heaps.clear();
+            if (socketFile != null)
+                Files.deleteIfExists(socketFile);
+        }
+    }
+
+    /**
+     * Releases the resources held by a heap that is no longer used, such as off-heap memory.
+     *
+     * @param heap the heap to be released
+     */
+    private static void release(Heap heap) {
+        if (heap instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) heap).close();
+            } catch (Exception e) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    /**
+     * Returns the heap registered under a name.
+     *
+     * @param name the name of the heap
+     * @return the heap
+     * @throws IllegalArgumentException if there is no heap with that name
+     */
+    private Heap lookup(String name) {
+        Heap heap = heaps.get(name);
+        if (heap == null)
+            throw new IllegalArgumentException("No heap named " + name);
+        return heap;
+    }
+
+    /**
+     * Reads a name, a byte length followed by UTF-8 bytes.
+     *
+     * @param request the request, positioned at the name
+     * @return the name
+     */
+    static String getName(ByteBuffer request) {
+        int length = request.get() & 0xFF;
+        String name = new String(request.array(), request.arrayOffset() + request.position(), length,
+                StandardCharsets.UTF_8);
+        request.position(request.position() + length);
+        return name;
+    }
+
+    /**
+     * Reads an array of ints, an int count followed by the values.
+     *
+     * @param request the request, positioned at the count
+     * @return the values
+     * @throws IllegalArgumentException if the count does not match the length of the request
+     */
+    private static int[] getInts(ByteBuffer request) {
+        int n = request.getInt();
+        if (n < 0 || n > request.remaining() / Integer.BYTES)
+            throw new IllegalArgumentException("Invalid value count: " + n);
+        int[] values = new int[n];
+        request.asIntBuffer().get(values);
+        request.position(request.position() + n * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Executes one request and appends its response to an output buffer.
+     * Invalid requests and failed operations produce an ERROR response.
+     *
+     * @param request the body of the request, after its length
+     * @param out the buffer the response is appended to
+     * @return the output buffer, which is replaced by a larger one if it was too small
+     */
+    private ByteBuffer execute(ByteBuffer request, ByteBuffer out) {
+        int start = out.position();
+        out = ensure(out, 2 * Integer.BYTES + 1 + Long.BYTES);
+        out.position(start + Integer.BYTES); // The length is filled in at the end
+        out.put(OK);
+
+        try {
+            byte op = request.get();
+            String name = getName(request);
+            switch (op) {
+                case CREATE:
+                    int implementation = request.get();
+                    if (heaps.containsKey(name))
+                        throw new IllegalArgumentException("A heap named " + name + " already exists");
+                    Heap created = Program.createHeap(implementation);
+                    if (created == null)
+                        throw new IllegalArgumentException("No heap implementation number " + implementation);
+                    heaps.put(name, created);
+                    break;
+
+                case DROP:
+                    release(lookup(name));
+                    heaps.remove(name);
+                    break;
+
+                case MAKE:
+                    Heap heap = lookup(name);
+                    heap.makeHeap(getInts(request));
+                    break;
+
+                case INSERT:
+                    heap = lookup(name);
+                    int[] values = getInts(request);
+                    heap.insertAll(values, 0, values.length);
+                    break;
+
+                case MIN:
+                    out.putInt(lookup(name).getMinVal());
+                    break;
+
+                case EXTRACT:
+                    out.putInt(lookup(name).extractMin());
+                    break;
+
+                case DRAIN:
+                    heap = lookup(name);
+                    int k = request.getInt();
+                    if (k < 0)
+                        throw new IllegalArgumentException("Negative drain count: " + k);
+                    k = (int) Math.min(Math.min(k, heap.size()), (MAX_FRAME - 16) / Integer.BYTES);
+                    int[] drained = new int[k];
+                    int n = heap.drainMin(drained, k);
+                    out = ensure(out, Integer.BYTES * (n + 1));
+                    out.putInt(n);
+                    out.asIntBuffer().put(drained, 0, n);
+                    out.position(out.position() + n * Integer.BYTES);
+                    break;
+
+                case SIZE:
+                    out.putLong(lookup(name).size());
+                    break;
+
+                case UNION:
+                    heap = lookup(name);
+                    String otherName = getName(request);
+                    if (otherName.equals(name))
+                        throw new IllegalArgumentException("Cannot union heap " + name + " with itself");
+                    heap.unionHeap(lookup(otherName));
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown opcode " + op);
+            }
+        } catch (RuntimeException e) { // Truncated request, unknown heap, or an operation the heap does not support
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            out.position(start + Integer.BYTES);
+            out = ensure(out, 1 + bytes.length);
+            out.put(ERROR).put(bytes);
+        }
+
+        out.putInt(start, out.position() - start - Integer.BYTES);
+        return out;
+    }
+
+    /**
+     * Makes sure a buffer has room for a number of bytes, replacing it with a larger copy if needed.
+     *
+     * @param buf the buffer, ready to be written to
+     * @param bytes the number of bytes needed
+     * @return the buffer or its larger copy
+     */
+    static ByteBuffer ensure(ByteBuffer buf, int bytes) {
+        if (buf.remaining() >= bytes)
+            return buf;
+
+        int capacity = Math.max(buf.capacity() * 2, buf.position() + bytes);
+        ByteBuffer larger = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        buf.flip();
+        larger.put(buf);
+        return larger;
+    }
+
+    /**
+     * The Connection class holds the buffers of one client connection.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);  // Ready to be written to
+        private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN); // Ready to be written to
+
+        /**
+         * Constructs the state of a new connection.
+         *
+         * @param channel the channel of the connection
+         */
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads what the client sent, executes every complete request and starts writing the responses.
+         *
+         * @param key the selection key of the connection
+         * @throws IOException if the connection is closed or a frame is malformed
+         */
+        void read(SelectionKey key) throws IOException {
+            if (channel.read(in) < 0)
+                throw new IOException("Connection closed");
+
+            in.flip();
+            while (in.remaining() >= Integer.BYTES) {
+                int length = in.getInt(in.position());
+                if (length < 2 || length > MAX_FRAME)
+                    throw new IOException("Invalid frame length: " + length);
+                if (in.remaining() < Integer.BYTES + length) {
+                    if (in.capacity() < Integer.BYTES + length) { // Grow to hold the whole frame
+                        ByteBuffer larger = ByteBuffer.allocate(Integer.BYTES + length).order(ByteOrder.LITTLE_ENDIAN);
+                        larger.put(in);
+                        in = larger;
+                        in.flip();
+                    }
+                    break;
+                }
+
+                int end = in.position() + Integer.BYTES + length;
+                ByteBuffer request = in.slice(in.position() + Integer.BYTES, length).order(ByteOrder.LITTLE_ENDIAN);
+                in.position(end);
+                out = execute(request, out);
+            }
+            in.compact();
+
+            if (out.position() > 0)
+                write(key);
+        }
+
+        /**
+         * Writes pending responses. While some remain, the connection waits to be writable instead of readable.
+         *
+         * @param key the selection key of the connection
+         * @throws IOException if the connection is closed
+         */
+        void write(SelectionKey key) throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            key.interestOps(out.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Parses a server address: a TCP port on the loopback interface, or --unix followed by a socket path.
+     *
+     * @param args the arguments, of which the first one or two are used
+     * @return the address
+     * @throws IllegalArgumentException if the arguments are not a valid address
+     */
+    static SocketAddress parseAddress(String[] args) {
+        if (args.length == 0)
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+        if (args[0].equals("--unix")) {
+            if (args.length < 2)
+                throw new IllegalArgumentException("Missing socket path after --unix");
+            return UnixDomainSocketAddress.of(args[1]);
+        }
+        try {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a valid port: " + args[0]);
+        }
+    }
+
+    /**
+     * Starts a server and serves clients until the process is stopped.
+     *
+     * @param args a loopback TCP port (7379 by default), or --unix followed by a socket path
+     * @throws IOException if the server fails
+     */
+    public static void main(String[] args) throws IOException {
+        try (HeapServer server = new HeapServer(parseAddress(args))) {
+            Thread serving = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> { // Let the server close, deleting its socket file
+                server.stop();
+                try {
+                    serving.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            System.out.println("Serving heaps on " + server.getLocalAddress());
+            server.run();
+        }
+    }
+}
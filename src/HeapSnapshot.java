@@ -0,0 +1,242 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The HeapSnapshot class reads and writes heaps in a compact binary snapshot format.
+ * A snapshot is a 16-byte header followed by the values of the heap as packed 32-bit ints, all little-endian:
+ * <pre>
+ *   int   magic    "MHSP"
+ *   short version  1
+ *   byte  kind     KIND_MIN_HEAP or KIND_SORTED_HEAP
+ *   byte  flags    FLAG_SORTED if the values are in non-decreasing order
+ *   long  count    the number of values
+ *   int[] values
+ * </pre>
+ * All reads and writes go through a file channel with a large direct buffer.
+ */
+public class HeapSnapshot implements Closeable {
+    public static final int KIND_MIN_HEAP = 1;
+    public static final int KIND_SORTED_HEAP = 2;
+    public static final int FLAG_SORTED = 1;
+
+    private static final int MAGIC = 0x5053484D; // "MHSP" in little-endian order
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 8;
+    private static final int BUFFER_SIZE = 1 << 16; // The I/O buffer holds 64 KB
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int kind;
+    private final boolean sorted;
+    private final long count;
+    private long remaining; // The number of values not read yet
+
+    /**
+     * Constructs a reader for an opened snapshot whose header has been read.
+     */
+    private HeapSnapshot(FileChannel channel, ByteBuffer buffer, int kind, boolean sorted, long count) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.kind = kind;
+        this.sorted = sorted;
+        this.count = count;
+        this.remaining = count;
+    }
+
+    /**
+     * Returns the name of the heap class a kind of snapshot is taken from.
+     *
+     * @param kind the kind of the snapshot
+     * @return the name of the heap class, or null if the kind is unknown
+     */
+    private static String kindName(int kind) {
+        switch (kind) {
+            case KIND_MIN_HEAP:
+                return "MinHeap";
+            case KIND_SORTED_HEAP:
+                return "SortedHeap";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Opens a snapshot file of the specified kind and reads its header.
+     *
+     * @param path the path of the snapshot file
+     * @param expectedKind the kind of heap the snapshot must come from, KIND_MIN_HEAP or KIND_SORTED_HEAP
+     * @return a reader positioned at the first value
+     * @throws IOException if the file cannot be read, is not a valid snapshot or is of another kind
+     */
+    public static HeapSnapshot open(Path path, int expectedKind) throws IOException {
+        HeapSnapshot snapshot = open(path);
+        if (snapshot.kind != expectedKind) {
+            snapshot.close();
+            throw new IOException("Not a " + kindName(expectedKind) + " snapshot but a " + kindName(snapshot.kind)
+                    + " snapshot: " + path);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Opens a snapshot file and reads its header.
+     *
+     * @param path the path of the snapshot file
+     * @return a reader positioned at the first value
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static HeapSnapshot open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(HEADER_SIZE);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    throw new IOException("Truncated heap snapshot header: " + path);
+            }
+            buffer.flip();
+
+            int magic = buffer.getInt();
+            short version = buffer.getShort();
+            int kind = buffer.get();
+            int flags = buffer.get();
+            long count = buffer.getLong();
+            if (magic != MAGIC)
+                throw new IOException("Not a heap snapshot: " + path);
+            if (version != VERSION)
+                throw new IOException("Unsupported heap snapshot version " + version + ": " + path);
+            if (kindName(kind) == null)
+                throw new IOException("Unknown heap snapshot kind " + kind + ": " + path);
+            if (count < 0 || channel.size() < HEADER_SIZE + count * Integer.BYTES)
+                throw new IOException("Truncated heap snapshot: " + path);
+
+            buffer.clear().limit(0); // No values buffered yet
+            return new HeapSnapshot(channel, buffer, kind, (flags & FLAG_SORTED) != 0, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a snapshot of a list of nodes.
+     * The count in the header is filled in after the values are written, so the list is walked only once.
+     *
+     * @param path the path of the snapshot file, which is replaced if it exists
+     * @param kind the kind of heap the values come from
+     * @param sorted whether the values are in non-decreasing order
+     * @param head the first node of the list
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, int kind, boolean sorted, Node head) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.put((byte) kind);
+            buffer.put((byte) (sorted ? FLAG_SORTED : 0));
+            buffer.putLong(0); // The count is not known yet
+
+            long count = 0;
+            for (Node ptr = head; ptr != null; ptr = ptr.getNext()) {
+                if (buffer.remaining() < Integer.BYTES)
+                    flush(channel, buffer);
+                buffer.putInt(ptr.getValue());
+                count++;
+            }
+            flush(channel, buffer);
+
+            // Fill in the count
+            buffer.putLong(count).flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer, COUNT_OFFSET + buffer.position());
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the channel and clears the buffer.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Returns the kind of heap the snapshot was taken from.
+     *
+     * @return KIND_MIN_HEAP or KIND_SORTED_HEAP
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns whether the values of the snapshot are in non-decreasing order.
+     *
+     * @return true if the values are sorted
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Returns the number of values in the snapshot.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Reads the next values of the snapshot into an array.
+     *
+     * @param dst the array to receive the values
+     * @param off the index in the array of the first value
+     * @param len the maximum number of values to read
+     * @return the number of values read, which is 0 once all values have been read
+     * @throws IOException if the file cannot be read
+     */
+    public int read(int[] dst, int off, int len) throws IOException {
+        int n = (int) Math.min(len, remaining);
+        int done = 0;
+        while (done < n) {
+            if (buffer.remaining() < Integer.BYTES) { // Refill the buffer
+                buffer.compact();
+                if (channel.read(buffer) < 0)
+                    throw new IOException("Truncated heap snapshot");
+                buffer.flip();
+                continue;
+            }
+
+            IntBuffer ints = buffer.asIntBuffer();
+            int chunk = Math.min(n - done, ints.remaining());
+            ints.get(dst, off + done, chunk);
+            buffer.position(buffer.position() + chunk * Integer.BYTES);
+            done += chunk;
+        }
+
+        remaining -= n;
+        return n;
+    }
+
+    /**
+     * Closes the snapshot file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
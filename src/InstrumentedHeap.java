@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The InstrumentedHeap class wraps a heap and records every operation in a HeapMetrics object:
+ * its count and latency, and the size of the heap afterwards.
+ * The wrapped heap also reports its comparisons and node visits to the same metrics when HeapMetrics.ENABLED is set.
+ * Heaps that are not wrapped pay nothing for the instrumentation.
+ */
+public class InstrumentedHeap extends Heap {
+    private final Heap delegate;        // The heap doing the work
+    private final HeapMetrics metrics;  // Where the work is recorded
+
+    /**
+     * Wraps a heap with new metrics.
+     *
+     * @param delegate the heap to be instrumented
+     */
+    public InstrumentedHeap(Heap delegate) {
+        this(delegate, new HeapMetrics());
+    }
+
+    /**
+     * Wraps a heap, recording into the specified metrics.
+     *
+     * @param delegate the heap to be instrumented
+     * @param metrics the metrics to record into
+     * @throws IllegalArgumentException if the heap is already instrumented
+     */
+    public InstrumentedHeap(Heap delegate, HeapMetrics metrics) {
+        if (delegate instanceof InstrumentedHeap)
+            throw new IllegalArgumentException("The heap is already instrumented");
+
+        this.delegate = delegate;
+        this.metrics = metrics;
+        delegate.attachMetrics(metrics);
+        metrics.updateSize(delegate.size());
+    }
+
+    /**
+     * Returns the instrumented heap.
+     *
+     * @return the wrapped heap
+     */
+    public Heap getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the metrics of the heap.
+     *
+     * @return the metrics
+     */
+    public HeapMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records a finished operation and the new size of the heap.
+     *
+     * @param operation the operation
+     * @param start the System.nanoTime at which the operation started
+     */
+    private void recordSince(HeapMetrics.Operation operation, long start) {
+        metrics.record(operation, System.nanoTime() - start);
+        metrics.updateSize(delegate.size());
+    }
+
+    @Override
+    public void makeHeap(int[] arr) {
+        long start = System.nanoTime();
+        delegate.makeHeap(arr);
+        recordSince(HeapMetrics.Operation.MAKE_HEAP, start);
+    }
+
+    @Override
+    public void makeHeap(IntStream values) {
+        long start = System.nanoTime();
+        delegate.makeHeap(values);
+        recordSince(HeapMetrics.Operation.MAKE_HEAP, start);
+    }
+
+    @Override
+    public void makeHeap(ReadableByteChannel channel) throws IOException {
+        long start = System.nanoTime();
+        delegate.makeHeap(channel);
+        recordSince(HeapMetrics.Operation.MAKE_HEAP, start);
+    }
+
+    @Override
+    public void insert(int value) {
+        long start = System.nanoTime();
+        delegate.insert(value);
+        recordSince(HeapMetrics.Operation.INSERT, start);
+    }
+
+    /**
+     * Inserts a batch of values into the heap, recorded as one INSERT_ALL sample with the number of values.
+     *
+     * @param values the array holding the values to be inserted
+     * @param off the index of the first value in the array
+     * @param len the number of values to be inserted
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     */
+    @Override
+    public void insertAll(int[] values, int off, int len) {
+        long start = System.nanoTime();
+        delegate.insertAll(values, off, len);
+        metrics.record(HeapMetrics.Operation.INSERT_ALL, System.nanoTime() - start, len);
+        metrics.updateSize(delegate.size());
+    }
+
+    @Override
+    public HeapHandle insertHandle(int value) {
+        long start = System.nanoTime();
+        HeapHandle handle = delegate.insertHandle(value);
+        recordSince(HeapMetrics.Operation.INSERT, start);
+        return handle;
+    }
+
+    @Override
+    public void decreaseKey(HeapHandle handle, int newValue) {
+        long start = System.nanoTime();
+        delegate.decreaseKey(handle, newValue);
+        recordSince(HeapMetrics.Operation.DECREASE_KEY, start);
+    }
+
+    @Override
+    public void delete(HeapHandle handle) {
+        long start = System.nanoTime();
+        delegate.delete(handle);
+        recordSince(HeapMetrics.Operation.DELETE, start);
+    }
+
+    @Override
+    public long size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int getMinVal() {
+        long start = System.nanoTime();
+        int minVal = delegate.getMinVal();
+        metrics.record(HeapMetrics.Operation.GET_MIN, System.nanoTime() - start);
+        return minVal;
+    }
+
+    @Override
+    public int extractMin() {
+        long start = System.nanoTime();
+        int minVal = delegate.extractMin();
+        recordSince(HeapMetrics.Operation.EXTRACT_MIN, start);
+        return minVal;
+    }
+
+    @Override
+    public int drainMin(int[] dest, int k) {
+        long start = System.nanoTime();
+        int n = delegate.drainMin(dest, k);
+        recordSince(HeapMetrics.Operation.DRAIN_MIN, start);
+        return n;
+    }
+
+    /**
+     * Merges another heap into the wrapped heap. An instrumented heap is unwrapped first,
+     * and its metrics see it become empty.
+     *
+     * @param heap the heap to be merged with the current heap
+     * @throws IllegalArgumentException if the wrapped heaps cannot be merged
+     */
+    @Override
+    public void unionHeap(Heap heap) {
+        Heap other = heap instanceof InstrumentedHeap ? ((InstrumentedHeap) heap).delegate : heap;
+        long start = System.nanoTime();
+        delegate.unionHeap(other);
+        recordSince(HeapMetrics.Operation.UNION, start);
+        if (heap instanceof InstrumentedHeap)
+            ((InstrumentedHeap) heap).metrics.updateSize(other.size());
+    }
+
+    @Override
+    public void sortHeap(IntConsumer sink) {
+        long start = System.nanoTime();
+        delegate.sortHeap(sink);
+        recordSince(HeapMetrics.Operation.SORT, start);
+    }
+
+    @Override
+    public int[] sortHeapToArray() {
+        long start = System.nanoTime();
+        int[] arr = delegate.sortHeapToArray();
+        recordSince(HeapMetrics.Operation.SORT, start);
+        return arr;
+    }
+
+    @Override
+    public void forEachValue(IntConsumer action) {
+        delegate.forEachValue(action);
+    }
+}
@@ -0,0 +1,607 @@
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The IntArrayHeap class implements a minimum heap as an implicit d-ary heap stored in a primitive int array.
+ * The children of the element at index i are stored at indices d*i+1 to d*i+d, so no per-element objects are needed.
+ * The arity d can be 2, 4 or 8.
+ * <p>
+ * The heap becomes indexed on the first call to insertHandle: a second array then holds the handle of the element
+ * at each index (null for elements inserted without one), and each handle records its element's index,
+ * so decreaseKey and delete find the element in constant time and take O(log n) time.
+ * Until then, and again after makeHeap, the heap keeps no handles and moving an element costs nothing extra.
+ */
+public class IntArrayHeap extends Heap {
+    private static final int DEFAULT_ARITY = 4;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final int shift; // log2 of the arity, used to compute parent and child indices
+    private int[] heap;      // The elements of the heap, in heap order
+    private Handle[] handles; // The handle of the element at each index, or null until insertHandle is first called
+    private int size;        // The number of elements in the heap
+
+    /**
+     * The handle of an element of an IntArrayHeap. Each handle records the value and the index of its element,
+     * and the heap keeps the index up to date as the element moves.
+     */
+    private static final class Handle implements HeapHandle {
+        private int value; // The value of the element
+        private int index; // The index of the element in the array, or -1 once it is removed
+
+        Handle(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Constructs an empty 4-ary IntArrayHeap.
+     */
+    public IntArrayHeap() {
+        this(DEFAULT_ARITY);
+    }
+
+    /**
+     * Constructs an empty IntArrayHeap with the specified arity.
+     *
+     * @param arity the number of children of each element, 2, 4 or 8
+     * @throws IllegalArgumentException if the arity is not 2, 4 or 8
+     */
+    public IntArrayHeap(int arity) {
+        if (arity != 2 && arity != 4 && arity != 8)
+            throw new IllegalArgumentException("Arity must be 2, 4 or 8, got " + arity);
+
+        shift = Integer.numberOfTrailingZeros(arity);
+        heap = new int[DEFAULT_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Returns the number of children of each element.
+     *
+     * @return the arity of the heap
+     */
+    public int getArity() {
+        return 1 << shift;
+    }
+
+    /**
+     * Passes each value of the heap to an action, in heap order, without removing it.
+     *
+     * @param action the action to be performed on each value
+     */
+    @Override
+    public void forEachValue(IntConsumer action) {
+        for (int i = 0; i < size; i++)
+            action.accept(heap[i]);
+    }
+
+    /**
+     * Makes sure the array can hold at least the specified number of elements.
+     * The array grows by at least half of its size, so appending is amortized constant time.
+     *
+     * @param capacity the required capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= heap.length)
+            return;
+
+        int newCapacity = Math.max(capacity, heap.length + (heap.length >> 1));
+        if (newCapacity < 0) // Overflow
+            newCapacity = Integer.MAX_VALUE - 8;
+        heap = Arrays.copyOf(heap, newCapacity);
+        if (handles != null)
+            handles = Arrays.copyOf(handles, newCapacity);
+    }
+
+    /**
+     * Stores a handle at an index of the array and records the index in the handle.
+     *
+     * @param i the index
+     * @param handle the handle, or null if the element has none
+     */
+    private void setHandle(int i, Handle handle) {
+        handles[i] = handle;
+        if (handle != null)
+            handle.index = i;
+    }
+
+    /**
+     * Moves the handle of the last element into a hole left by a removed one, after the size has been decreased,
+     * and invalidates the handle of the removed element. Only called when the heap is indexed.
+     *
+     * @param i the index of the removed element
+     */
+    private void replaceHandle(int i) {
+        Handle removed = handles[i];
+        if (removed != null)
+            removed.index = -1;
+        handles[i] = handles[size];
+        handles[size] = null; // Slots past the end stay empty
+    }
+
+    /**
+     * Invalidates the handles of a range of elements that are removed at once.
+     *
+     * @param from the first index of the range
+     * @param to the index after the last one of the range
+     */
+    private void releaseHandles(int from, int to) {
+        if (handles == null)
+            return;
+        for (int i = from; i < to; i++) {
+            if (handles[i] != null)
+                handles[i].index = -1;
+            handles[i] = null;
+        }
+    }
+
+    /**
+     * Moves a value up from the specified index until its parent is not greater.
+     * If the heap is indexed, the handle of the value must already be at that index.
+     *
+     * @param i the index of the hole where the value starts
+     * @param value the value to be placed
+     */
+    private void siftUp(int i, int value) {
+        if (handles != null) {
+            siftUpIndexed(i, value);
+            return;
+        }
+
+        long comparisons = 0; // For the metrics
+        while (i > 0) {
+            int parent = (i - 1) >>> shift;
+            int p = heap[parent];
+            comparisons++;
+            if (p <= value)
+                break;
+            heap[i] = p; // Move the parent down into the hole
+            i = parent;
+        }
+        heap[i] = value;
+        recordWork(comparisons, comparisons);
+    }
+
+    /**
+     * Moves a value up as siftUp does, moving the handles along with the values.
+     *
+     * @param i the index of the hole where the value starts, which holds the handle of the value
+     * @param value the value to be placed
+     */
+    private void siftUpIndexed(int i, int value) {
+        Handle handle = handles[i];
+        long comparisons = 0; // For the metrics
+        while (i > 0) {
+            int parent = (i - 1) >>> shift;
+            int p = heap[parent];
+            comparisons++;
+            if (p <= value)
+                break;
+            heap[i] = p; // Move the parent down into the hole
+            setHandle(i, handles[parent]);
+            i = parent;
+        }
+        heap[i] = value;
+        setHandle(i, handle);
+        recordWork(comparisons, comparisons);
+    }
+
+    /**
+     * Moves a value down from the specified index until none of its children is smaller.
+     * If the heap is indexed, the handle of the value must already be at that index.
+     *
+     * @param i the index of the hole where the value starts
+     * @param value the value to be placed
+     */
+    private void siftDown(int i, int value) {
+        if (handles != null) {
+            siftDownIndexed(i, value);
+            return;
+        }
+
+        int[] a = heap;
+        int n = size;
+        int child;
+        long visits = 0; // For the metrics
+        while ((child = (i << shift) + 1) < n) {
+            // Find the smallest of the children
+            int end = Math.min(child + (1 << shift), n);
+            visits += end - child;
+            int best = child;
+            int bestVal = a[child];
+            for (int c = child + 1; c < end; c++) {
+                if (a[c] < bestVal) {
+                    best = c;
+                    bestVal = a[c];
+                }
+            }
+
+            if (bestVal >= value)
+                break;
+            a[i] = bestVal; // Move the smallest child up into the hole
+            i = best;
+        }
+        a[i] = value;
+        recordWork(visits, visits); // One comparison per child visited
+    }
+
+    /**
+     * Moves a value down as siftDown does, moving the handles along with the values.
+     *
+     * @param i the index of the hole where the value starts, which holds the handle of the value
+     * @param value the value to be placed
+     */
+    private void siftDownIndexed(int i, int value) {
+        int[] a = heap;
+        Handle handle = handles[i];
+        int n = size;
+        int child;
+        long visits = 0; // For the metrics
+        while ((child = (i << shift) + 1) < n) {
+            // Find the smallest of the children
+            int end = Math.min(child + (1 << shift), n);
+            visits += end - child;
+            int best = child;
+            int bestVal = a[child];
+            for (int c = child + 1; c < end; c++) {
+                if (a[c] < bestVal) {
+                    best = c;
+                    bestVal = a[c];
+                }
+            }
+
+            if (bestVal >= value)
+                break;
+            a[i] = bestVal; // Move the smallest child up into the hole
+            setHandle(i, handles[best]);
+            i = best;
+        }
+        a[i] = value;
+        setHandle(i, handle);
+        recordWork(visits, visits); // One comparison per child visited
+    }
+
+    /**
+     * Restores the heap order of the whole array bottom-up (Floyd's method) in linear time.
+     * A large heap is restored level by level: the subtrees below one level are disjoint,
+     * so a wide level is split across the common ForkJoin pool, and the next level up starts once it is done.
+     */
+    private void heapify() {
+        int lastParent = (size - 2) >> shift;
+        if (!buildInParallel(size)) {
+            for (int i = lastParent; i >= 0; i--) // From the last parent back to the root
+                siftDown(i, heap[i]);
+            return;
+        }
+
+        int levelStart = 0; // The first index of the level holding the last parent
+        while ((levelStart << shift) + 1 <= lastParent)
+            levelStart = (levelStart << shift) + 1;
+        for (int end = lastParent + 1; end > 0; end = levelStart, levelStart = (levelStart - 1) >> shift) {
+            if (end - levelStart > PARALLEL_CHUNK_SIZE) {
+                ForkJoinPool.commonPool().invoke(new HeapifyTask(levelStart, end));
+            } else {
+                for (int i = end - 1; i >= levelStart; i--)
+                    siftDown(i, heap[i]);
+            }
+        }
+    }
+
+    /**
+     * A fork/join task that sifts down every element in a range of one level of the heap,
+     * by splitting the range in halves until each is small enough.
+     */
+    private final class HeapifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo, hi;
+
+        HeapifyTask(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= PARALLEL_CHUNK_SIZE) {
+                for (int i = hi - 1; i >= lo; i--)
+                    siftDown(i, heap[i]);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new HeapifyTask(lo, mid), new HeapifyTask(mid, hi));
+        }
+    }
+
+    /**
+     * Inserts a new value into the heap.
+     *
+     * @param value the value to be inserted
+     */
+    @Override
+    public void insert(int value) {
+        ensureCapacity(size + 1);
+        siftUp(size++, value);
+    }
+
+    /**
+     * Inserts a new value into the heap and returns a handle to it, making the heap indexed.
+     *
+     * @param value the value to be inserted
+     * @return the handle of the value
+     */
+    @Override
+    public HeapHandle insertHandle(int value) {
+        ensureCapacity(size + 1);
+        if (handles == null)
+            handles = new Handle[heap.length];
+
+        Handle handle = new Handle(value);
+        handles[size] = handle;
+        siftUp(size++, value);
+        return handle;
+    }
+
+    /**
+     * Lowers the value of an element and moves it up, in O(log n) time.
+     *
+     * @param handle the handle of the element, as returned by insertHandle
+     * @param newValue the new value, which must not be greater than the current one
+     * @throws IllegalArgumentException if the new value is greater than the current one,
+     *                                  or the handle does not belong to an element of this heap
+     */
+    @Override
+    public void decreaseKey(HeapHandle handle, int newValue) {
+        Handle h = handleOf(handle);
+        checkDecrease(h, newValue);
+        h.value = newValue;
+        siftUp(h.index, newValue);
+    }
+
+    /**
+     * Removes an element from the heap in O(log n) time.
+     * The last element takes its place and moves up or down to restore the heap order.
+     *
+     * @param handle the handle of the element, as returned by insertHandle
+     * @throws IllegalArgumentException if the handle does not belong to an element of this heap
+     */
+    @Override
+    public void delete(HeapHandle handle) {
+        int i = handleOf(handle).index;
+        int last = heap[--size];
+        replaceHandle(i);
+        if (i == size) // The last element itself was removed
+            return;
+
+        if (i > 0 && heap[(i - 1) >>> shift] > last)
+            siftUp(i, last);
+        else
+            siftDown(i, last);
+    }
+
+    /**
+     * Checks that a handle belongs to an element that is still in this heap.
+     *
+     * @param handle the handle
+     * @return the handle as a Handle
+     * @throws IllegalArgumentException if the handle does not belong to an element of this heap
+     */
+    private Handle handleOf(HeapHandle handle) {
+        if (handle instanceof Handle) {
+            Handle h = (Handle) handle;
+            if (handles != null && h.index >= 0 && h.index < size && handles[h.index] == h)
+                return h;
+        }
+        throw new IllegalArgumentException("Not a handle of an element of this IntArrayHeap: " + handle.getClass().getSimpleName());
+    }
+
+    /**
+     * Builds a heap from an array of integers in linear time. Handles from before are no longer valid.
+     * The array itself is not modified.
+     *
+     * @param arr the array of integers
+     */
+    @Override
+    public void makeHeap(int[] arr) {
+        releaseHandles(0, size);
+        handles = null;
+        heap = Arrays.copyOf(arr, Math.max(arr.length, DEFAULT_CAPACITY));
+        size = arr.length;
+        heapify();
+    }
+
+    /**
+     * Builds a heap from a stream of integers in linear time. Handles from before are no longer valid.
+     * The values are appended as they arrive and the heap order is restored once at the end.
+     *
+     * @param values the stream of integers
+     */
+    @Override
+    public void makeHeap(IntStream values) {
+        releaseHandles(0, size);
+        handles = null;
+        size = 0;
+        values.sequential().forEachOrdered(this::append);
+        heapify();
+    }
+
+    /**
+     * Builds a heap from whitespace-separated integers read from a channel, in linear time.
+     * Handles from before are no longer valid.
+     * The values are appended as they are parsed and the heap order is restored once at the end.
+     *
+     * @param channel the channel to read from
+     * @throws IOException if the channel cannot be read
+     */
+    @Override
+    public void makeHeap(ReadableByteChannel channel) throws IOException {
+        releaseHandles(0, size);
+        handles = null;
+        size = 0;
+        ArrayUtils.readInts(channel, this::append);
+        heapify();
+    }
+
+    /**
+     * Appends a value to the end of the array without restoring the heap order.
+     *
+     * @param value the value to be appended
+     */
+    private void append(int value) {
+        ensureCapacity(size + 1);
+        heap[size++] = value;
+    }
+
+    /**
+     * Inserts a batch of values into the heap.
+     * A batch that is large compared to the heap is appended and the array is rebuilt in linear time,
+     * while a small batch is sifted up value by value.
+     *
+     * @param values the array holding the values to be inserted
+     * @param off the index of the first value in the array
+     * @param len the number of values to be inserted
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     */
+    @Override
+    public void insertAll(int[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        ensureCapacity(size + len);
+        if (len > (size >>> 2)) { // Rebuilding is cheaper than len sift-ups
+            System.arraycopy(values, off, heap, size, len);
+            size += len;
+            heapify();
+        } else {
+            for (int i = off; i < off + len; i++)
+                siftUp(size++, values[i]);
+        }
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return the number of elements in the heap
+     */
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the minimum value in the heap.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int getMinVal() {
+        if (size > 0)
+            return heap[0];
+        return Integer.MAX_VALUE; // If the heap is empty
+    }
+
+    /**
+     * Removes and returns the minimum value in the heap.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int extractMin() {
+        if (size == 0) // If the heap is empty
+            return Integer.MAX_VALUE;
+
+        int minVal = heap[0];
+        int last = heap[--size];
+        if (handles != null)
+            replaceHandle(0);
+        if (size > 0)
+            siftDown(0, last); // Move the last element into the root's place
+
+        return minVal;
+    }
+
+    /**
+     * Removes the k smallest values from the heap, in ascending order.
+     * If the whole heap is drained, the array is sorted directly instead of being extracted element by element.
+     *
+     * @param dest the array to receive the values, starting at index 0
+     * @param k the number of values to be extracted
+     * @return the number of values extracted, which is less than k if the heap holds fewer values
+     * @throws IndexOutOfBoundsException if k is negative or greater than the length of the array
+     */
+    @Override
+    public int drainMin(int[] dest, int k) {
+        Objects.checkFromIndexSize(0, k, dest.length);
+        int n = Math.min(k, size);
+        if (n == size) { // Everything goes
+            System.arraycopy(heap, 0, dest, 0, n);
+            ArrayUtils.mergeSort(dest, 0, n);
+            releaseHandles(0, n);
+            size = 0;
+            return n;
+        }
+
+        for (int i = 0; i < n; i++) {
+            dest[i] = heap[0];
+            int last = heap[--size];
+            if (handles != null)
+                replaceHandle(0);
+            siftDown(0, last); // Move the last element into the root's place
+        }
+        return n;
+    }
+
+    /**
+     * Merges the current heap with another array heap into this heap.
+     * A small heap is inserted element by element, while a large one is appended and the array is rebuilt in linear time.
+     * Handles of the other heap's elements move with them and become handles of this heap.
+     * At the end, the other heap is empty.
+     *
+     * @param heap the other heap to be merged
+     * @throws IllegalArgumentException if the other heap is not an IntArrayHeap
+     */
+    @Override
+    public void unionHeap(Heap heap) {
+        if (!(heap instanceof IntArrayHeap))
+            throw new IllegalArgumentException("Cannot union an IntArrayHeap with a " + heap.getClass().getSimpleName());
+
+        IntArrayHeap other = (IntArrayHeap) heap;
+        if (other == this || other.size == 0)
+            return;
+
+        int n = size;
+        int m = other.size;
+        ensureCapacity(n + m);
+        if (other.handles != null && handles == null)
+            handles = new Handle[this.heap.length];
+        if (m > (n >>> 2)) { // Rebuilding is cheaper than m sift-ups
+            System.arraycopy(other.heap, 0, this.heap, n, m);
+            if (other.handles != null) {
+                for (int i = 0; i < m; i++)
+                    setHandle(n + i, other.handles[i]);
+            }
+            size = n + m;
+            heapify();
+        } else {
+            for (int i = 0; i < m; i++) {
+                if (other.handles != null)
+                    handles[size] = other.handles[i];
+                siftUp(size++, other.heap[i]);
+            }
+        }
+
+        if (other.handles != null)
+            Arrays.fill(other.handles, 0, m, null);
+        other.size = 0;
+    }
+}
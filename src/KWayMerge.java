@@ -0,0 +1,110 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The KWayMerge class merges any number of sorted int sources into one sorted sequence in O(total * log k),
+ * using a LoserTree to pick the next value.
+ * To merge SortedHeaps by relinking their nodes, use SortedHeap.mergeAll instead.
+ * A merged stream can be turned into a SortedHeap with makeHeap, which links already sorted input in linear time.
+ */
+public final class KWayMerge {
+
+    private KWayMerge() {
+        // Static methods only
+    }
+
+    /**
+     * Returns an iterator over the merged values of sorted sources.
+     * Equal values are returned in the order of their sources. The sources are read lazily.
+     *
+     * @param sources the sources, each in ascending order
+     * @return an iterator over the values of all the sources, in ascending order
+     * @throws IllegalArgumentException while iterating, if a source turns out not to be in ascending order
+     */
+    public static PrimitiveIterator.OfInt merge(List<? extends PrimitiveIterator.OfInt> sources) {
+        return new Merger(sources);
+    }
+
+    /**
+     * Returns a stream of the merged values of sorted sources.
+     *
+     * @param sources the sources, each in ascending order
+     * @return a sequential stream of the values of all the sources, in ascending order
+     * @throws IllegalArgumentException while streaming, if a source turns out not to be in ascending order
+     */
+    public static IntStream stream(List<? extends PrimitiveIterator.OfInt> sources) {
+        Spliterator.OfInt spliterator = Spliterators.spliteratorUnknownSize(merge(sources), Spliterator.ORDERED);
+        return StreamSupport.intStream(spliterator, false);
+    }
+
+    /**
+     * Merges sorted sources and passes the values to a consumer.
+     *
+     * @param sources the sources, each in ascending order
+     * @param sink the consumer that receives the values in ascending order
+     * @return the number of values passed to the consumer
+     * @throws IllegalArgumentException if a source is not in ascending order
+     */
+    public static long merge(List<? extends PrimitiveIterator.OfInt> sources, IntConsumer sink) {
+        Merger merger = new Merger(sources);
+        long count = 0;
+        while (merger.hasNext()) {
+            sink.accept(merger.nextInt());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Iterates over the merged values of sorted sources.
+     */
+    private static final class Merger implements PrimitiveIterator.OfInt {
+        private final PrimitiveIterator.OfInt[] sources;
+        private final LoserTree tree; // null if there are no sources
+
+        Merger(List<? extends PrimitiveIterator.OfInt> sources) {
+            this.sources = sources.toArray(new PrimitiveIterator.OfInt[0]);
+            if (this.sources.length == 0) {
+                tree = null;
+                return;
+            }
+
+            tree = new LoserTree(this.sources.length);
+            for (int i = 0; i < this.sources.length; i++) {
+                if (this.sources[i].hasNext())
+                    tree.init(i, this.sources[i].nextInt());
+            }
+            tree.build();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return tree != null && !tree.isEmpty();
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            int source = tree.winner();
+            int value = tree.winnerKey();
+            PrimitiveIterator.OfInt it = sources[source];
+            if (it.hasNext()) {
+                int next = it.nextInt();
+                if (next < value)
+                    throw new IllegalArgumentException("Source " + source + " is not sorted: " + next + " after " + value);
+                tree.replaceWinner(next);
+            } else {
+                tree.removeWinner();
+            }
+            return value;
+        }
+    }
+}
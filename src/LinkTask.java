@@ -0,0 +1,60 @@
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A fork/join task that links a range of an array into a doubly linked list of new nodes, in array order,
+ * and finds the node with the minimum value. Halves of the range are linked in parallel and then concatenated.
+ * Used by the list-based heaps to build large heaps in parallel.
+ */
+final class LinkTask extends RecursiveTask<LinkTask> {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] arr;
+    private final int lo, hi;
+    Node first; // The first node of the linked list
+    Node last;  // The last node of the linked list
+    Node min;   // The first node with the minimum value
+
+    /**
+     * Constructs a task that links a range of an array, which must not be empty.
+     *
+     * @param arr the array holding the values
+     * @param lo the index of the first value
+     * @param hi the index after the last value
+     */
+    LinkTask(int[] arr, int lo, int hi) {
+        this.arr = arr;
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    @Override
+    protected LinkTask compute() {
+        if (hi - lo <= Heap.PARALLEL_CHUNK_SIZE) {
+            first = new Node(arr[lo]);
+            last = first;
+            min = first;
+            for (int i = lo + 1; i < hi; i++) {
+                Node node = new Node(arr[i]);
+                last.setNext(node);
+                node.setPrev(last);
+                last = node;
+                if (node.getValue() < min.getValue())
+                    min = node;
+            }
+            return this;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        LinkTask left = new LinkTask(arr, lo, mid);
+        LinkTask right = new LinkTask(arr, mid, hi);
+        invokeAll(left, right);
+
+        // Concatenate the two lists, keeping the first minimum
+        left.last.setNext(right.first);
+        right.first.setPrev(left.last);
+        first = left.first;
+        last = right.last;
+        min = right.min.getValue() < left.min.getValue() ? right.min : left.min;
+        return this;
+    }
+}
@@ -0,0 +1,232 @@
+// Generated by tools/GenerateKeyHeaps.java from templates/KeyHeap.java.template. Do not edit.
+import java.util.Arrays;
+
+/**
+ * The LongKeyHeap class implements a minimum heap of long keys, each carrying a payload.
+ * It is an implicit 4-ary heap like IntArrayHeap, with the keys and the payloads kept in parallel arrays,
+ * so no key is ever boxed.
+ *
+ * @param <V> the type of the payloads
+ */
+public class LongKeyHeap<V> {
+    private static final int ARITY_SHIFT = 2; // log2 of the arity, used to compute parent and child indices
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys; // The keys of the heap, in heap order
+    private Object[] payloads; // The payload of each key, at the same index as the key
+    private int size; // The number of entries in the heap
+
+    /**
+     * Constructs an empty LongKeyHeap.
+     */
+    public LongKeyHeap() {
+        keys = newKeys(DEFAULT_CAPACITY);
+        payloads = new Object[DEFAULT_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Allocates an array of keys.
+     *
+     * @param capacity the length of the array
+     * @return a new array of keys
+     */
+    @SuppressWarnings("unchecked")
+    private static long[] newKeys(int capacity) {
+        return new long[capacity];
+    }
+
+    /**
+     * Returns whether the first key is smaller than the second.
+     *
+     * @param a the first key
+     * @param b the second key
+     * @return true if a comes before b
+     */
+    private static boolean less(long a, long b) {
+        return a < b;
+    }
+
+    /**
+     * Makes sure the arrays can hold at least the specified number of entries.
+     * The arrays grow by at least half of their size, so appending is amortized constant time.
+     *
+     * @param capacity the required capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= keys.length)
+            return;
+
+        int newCapacity = Math.max(capacity, keys.length + (keys.length >> 1));
+        if (newCapacity < 0) // Overflow
+            newCapacity = Integer.MAX_VALUE - 8;
+        keys = Arrays.copyOf(keys, newCapacity);
+        payloads = Arrays.copyOf(payloads, newCapacity);
+    }
+
+    /**
+     * Moves an entry up from the specified index until its parent's key is not greater.
+     *
+     * @param i the index of the hole where the entry starts
+     * @param key the key of the entry
+     * @param payload the payload of the entry
+     */
+    private void siftUp(int i, long key, Object payload) {
+        while (i > 0) {
+            int parent = (i - 1) >>> ARITY_SHIFT;
+            if (!less(key, keys[parent]))
+                break;
+            keys[i] = keys[parent]; // Move the parent down into the hole
+            payloads[i] = payloads[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        payloads[i] = payload;
+    }
+
+    /**
+     * Moves an entry down from the specified index until none of its children has a smaller key.
+     *
+     * @param i the index of the hole where the entry starts
+     * @param key the key of the entry
+     * @param payload the payload of the entry
+     */
+    private void siftDown(int i, long key, Object payload) {
+        int child;
+        while ((child = (i << ARITY_SHIFT) + 1) < size) {
+            // Find the child with the smallest key
+            int end = Math.min(child + (1 << ARITY_SHIFT), size);
+            int best = child;
+            for (int c = child + 1; c < end; c++) {
+                if (less(keys[c], keys[best]))
+                    best = c;
+            }
+
+            if (!less(keys[best], key))
+                break;
+            keys[i] = keys[best]; // Move the smallest child up into the hole
+            payloads[i] = payloads[best];
+            i = best;
+        }
+        keys[i] = key;
+        payloads[i] = payload;
+    }
+
+    /**
+     * Inserts a new entry into the heap.
+     *
+     * @param key the key of the entry
+     * @param payload the payload of the entry, may be null
+     */
+    public void insert(long key, V payload) {
+        ensureCapacity(size + 1);
+        siftUp(size++, key, payload);
+    }
+
+    /**
+     * Builds a heap from parallel arrays of keys and payloads in linear time, replacing the entries of the heap.
+     * The arrays themselves are not modified.
+     *
+     * @param keys the keys of the entries
+     * @param payloads the payloads of the entries, at the same indices as their keys
+     * @throws IllegalArgumentException if the arrays do not have the same length
+     */
+    public void makeHeap(long[] keys, V[] payloads) {
+        if (keys.length != payloads.length)
+            throw new IllegalArgumentException("Got " + keys.length + " keys but " + payloads.length + " payloads");
+
+        int capacity = Math.max(keys.length, DEFAULT_CAPACITY);
+        this.keys = Arrays.copyOf(keys, capacity);
+        this.payloads = Arrays.copyOf(payloads, capacity, Object[].class);
+        size = keys.length;
+        for (int i = (size - 2) >> ARITY_SHIFT; i >= 0; i--) // From the last parent back to the root (Floyd's method)
+            siftDown(i, this.keys[i], this.payloads[i]);
+    }
+
+    /**
+     * Returns the number of entries in the heap.
+     *
+     * @return the number of entries in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the heap is empty.
+     *
+     * @return true if the heap holds no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the minimum key in the heap.
+     *
+     * @return the minimum key in the heap, or Long.MAX_VALUE if the heap is empty
+     */
+    public long getMinKey() {
+        if (size > 0)
+            return keys[0];
+        return Long.MAX_VALUE; // If the heap is empty
+    }
+
+    /**
+     * Returns the payload of the minimum key in the heap.
+     *
+     * @return the payload of the minimum key, or null if the heap is empty
+     */
+    @SuppressWarnings("unchecked")
+    public V getMinPayload() {
+        if (size > 0)
+            return (V) payloads[0];
+        return null; // If the heap is empty
+    }
+
+    /**
+     * Removes the entry with the minimum key and returns its payload.
+     * Call getMinKey first to learn the key.
+     *
+     * @return the payload of the minimum key, or null if the heap is empty
+     */
+    @SuppressWarnings("unchecked")
+    public V extractMin() {
+        if (size == 0) // If the heap is empty
+            return null;
+
+        V minPayload = (V) payloads[0];
+        int last = --size;
+        long lastKey = keys[last];
+        Object lastPayload = payloads[last];
+        payloads[last] = null; // Let the payload be collected
+        if (size > 0)
+            siftDown(0, lastKey, lastPayload); // Move the last entry into the root's place
+
+        return minPayload;
+    }
+
+    /**
+     * Removes all the entries of the heap.
+     */
+    public void clear() {
+        Arrays.fill(payloads, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Returns a string representation of the heap, listing its entries as key=payload in heap order.
+     *
+     * @return a string representation of the heap
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                str.append(", ");
+            str.append(keys[i]).append('=').append(payloads[i]);
+        }
+        return str.append(']').toString();
+    }
+}
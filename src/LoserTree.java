@@ -0,0 +1,144 @@
+import java.util.Arrays;
+
+/**
+ * The LoserTree class selects the smallest key among k sources, as used by a k-way merge.
+ * Each internal node of the tree remembers the loser of the match played there, and the overall winner is kept apart,
+ * so replacing the winner's key replays a single path from its leaf to the root: log2(k) comparisons, with no swaps.
+ * The tree only stores keys; the caller keeps its own cursor into each source and reports the next key of the winner.
+ * Equal keys are won by the source with the lower index, so a merge through the tree is stable.
+ */
+public final class LoserTree {
+    private final int k;           // The number of sources
+    private final int[] tree;      // tree[0] is the winner, tree[1..k-1] the loser at each internal node
+    private final int[] keys;      // The current key of each source
+    private final boolean[] done;  // Whether each source is exhausted
+
+    /**
+     * Constructs a tree over k sources, all of them exhausted until they are given a key with init.
+     *
+     * @param k the number of sources
+     * @throws IllegalArgumentException if k is not positive
+     */
+    public LoserTree(int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("A loser tree needs at least one source, got " + k);
+
+        this.k = k;
+        tree = new int[k];
+        keys = new int[k];
+        done = new boolean[k];
+        Arrays.fill(done, true);
+    }
+
+    /**
+     * Gives a source its first key. Must be followed by build once every source has been initialized.
+     *
+     * @param source the index of the source
+     * @param key the first key of the source
+     */
+    public void init(int source, int key) {
+        keys[source] = key;
+        done[source] = false;
+    }
+
+    /**
+     * Plays all the matches from the leaves to the root, in O(k).
+     * Leaf i is at position k+i of an implicit binary tree, so the internal nodes are positions 1 to k-1.
+     */
+    public void build() {
+        int[] winners = new int[2 * k];
+        for (int i = 0; i < k; i++)
+            winners[k + i] = i;
+        for (int node = k - 1; node >= 1; node--) {
+            int a = winners[2 * node];
+            int b = winners[2 * node + 1];
+            if (beats(a, b)) {
+                winners[node] = a;
+                tree[node] = b;
+            } else {
+                winners[node] = b;
+                tree[node] = a;
+            }
+        }
+        tree[0] = winners[1]; // With one source, position 1 is its leaf
+    }
+
+    /**
+     * Returns whether source a comes before source b. An exhausted source never comes first.
+     *
+     * @param a the index of the first source
+     * @param b the index of the second source
+     * @return true if the key of a is smaller, or equal with a lower index
+     */
+    private boolean beats(int a, int b) {
+        if (done[a])
+            return false;
+        if (done[b])
+            return true;
+        return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+    }
+
+    /**
+     * Replays the matches on the path from a leaf to the root after its key has changed.
+     *
+     * @param source the index of the source whose key has changed
+     */
+    private void replay(int source) {
+        int winner = source;
+        for (int node = (k + source) >>> 1; node >= 1; node >>>= 1) {
+            if (beats(tree[node], winner)) { // The stored loser wins this time, and the old winner stays behind
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    /**
+     * Returns whether every source is exhausted.
+     *
+     * @return true if there are no more keys
+     */
+    public boolean isEmpty() {
+        return done[tree[0]];
+    }
+
+    /**
+     * Returns the source holding the smallest key.
+     *
+     * @return the index of the winning source
+     */
+    public int winner() {
+        return tree[0];
+    }
+
+    /**
+     * Returns the smallest key.
+     *
+     * @return the key of the winning source
+     */
+    public int winnerKey() {
+        return keys[tree[0]];
+    }
+
+    /**
+     * Replaces the key of the winning source with its next key.
+     *
+     * @param key the next key of the winning source
+     */
+    public void replaceWinner(int key) {
+        int source = tree[0];
+        keys[source] = key;
+        replay(source);
+    }
+
+    /**
+     * Marks the winning source as exhausted.
+     */
+    public void removeWinner() {
+        int source = tree[0];
+        done[source] = true;
+        replay(source);
+    }
+}
@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 /**
@@ -7,13 +9,22 @@ public class Main {
     /**
      * Main method that initiates the user interface and handles user choices for heap implementations.
      * 
-     * @param args Command line arguments (not used).
+     * With --batch, a script of heap operations is replayed without interaction instead (see BatchRunner).
+     * 
+     * @param args Command line arguments: none for the interactive interface,
+     *             "--batch <implementation> <script>" to replay a script or op log,
+     *             or "--compile <script> <op log>" to convert a script into a binary op log.
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            batch(args);
+            return;
+        }
+
         Scanner input = new Scanner(System.in);
 
         System.out.println("Which of the following choices do you wish to use to implement the heap?");
-        System.out.println("1. Minimum-Heap\n2. Sorted-Heap");
+        System.out.println("1. Minimum-Heap\n2. Sorted-Heap\n3. Pairing-Heap\n4. Array-Heap\n5. Off-Heap\n6. Concurrent-Heap\n7. Radix-Heap");
 
         while(true) { // Infinite loop to keep the interface running
             System.out.println("Please enter your choice:");
@@ -25,11 +36,14 @@ public class Main {
             input.nextLine(); // Consume the newline character
 
             switch(choice) {
-                case 1:
-                    Program.heapImplement(true); // Call the method for Min-Heap implementation
-                    break;
-                case 2:
-                    Program.heapImplement(false); // Call the method for Sorted-Heap implementation
+                case 1: // Min-Heap implementation
+                case 2: // Sorted-Heap implementation
+                case 3: // Pairing-Heap implementation
+                case 4: // Array-Heap implementation
+                case 5: // Off-Heap implementation
+                case 6: // Concurrent-Heap implementation
+                case 7: // Radix-Heap implementation
+                    Program.heapImplement(choice);
                     break;
                 default:
                     System.out.println("You have entered a wrong number of implementation!");
@@ -46,4 +60,32 @@ public class Main {
 
         input.close(); // Close the Scanner object
     }
+
+    /**
+     * Runs the non-interactive batch mode.
+     * 
+     * @param args Command line arguments, starting with --batch or --compile.
+     */
+    private static void batch(String[] args) {
+        try {
+            if (args.length == 3 && args[0].equals("--batch")) {
+                int implementation;
+                try {
+                    implementation = Integer.parseInt(args[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Not a valid implementation number: " + args[1]);
+                }
+                BatchRunner.parse(Path.of(args[2])).run(implementation, System.out);
+            } else if (args.length == 3 && args[0].equals("--compile")) {
+                int count = BatchRunner.compile(Path.of(args[1]), Path.of(args[2]));
+                System.out.println("Wrote " + count + " operations to " + args[2]);
+            } else {
+                System.err.println("Usage: java Main [--batch <implementation> <script> | --compile <script> <op log>]");
+                System.exit(2);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
 }
@@ -1,19 +1,51 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
 /**
  * The MinHeap class implements a minimum heap using a doubly linked list.
  * Each heap contains nodes with integer values, and provides various methods to manipulate the heap.
  */
 public class MinHeap extends Heap {
+    private static final int LOAD_BATCH_SIZE = 1 << 14; // The number of values read from a snapshot at once
+
     private Node head; // The head (first node) of the doubly linked list representing the heap
     private Node tail; // The tail (last node) of the doubly linked list representing the heap
     private Node min;  // The node with the minimum value in the heap
+    private long size; // The number of nodes in the heap
+    private NodeOwner owner; // The owner of the handles of the heap, replaced when the heap is rebuilt
+    private final NodePool pool; // The pool that recycles the nodes, or null to allocate every node
 
     /**
      * Constructs an empty MinHeap.
      */
     public MinHeap() {
+        this(null);
+    }
+
+    /**
+     * Constructs an empty MinHeap that takes its nodes from a pool and returns them to it when they are removed.
+     *
+     * @param pool the node pool, or null to allocate every node
+     */
+    public MinHeap(NodePool pool) {
         head = null;
         tail = null;
         min = null;
+        size = 0;
+        owner = new NodeOwner();
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the pool that recycles the nodes of the heap.
+     *
+     * @return the node pool, or null if the heap does not use one
+     */
+    public NodePool getPool() {
+        return pool;
     }
 
     /**
@@ -71,60 +103,83 @@ public class MinHeap extends Heap {
     }
 
     /**
-     * Returns a string representation of the heap.
+     * Passes each value of the heap to an action, in list order, without removing it.
      *
-     * @return a string representation of the heap
+     * @param action the action to be performed on each value
+     */
+    @Override
+    public void forEachValue(IntConsumer action) {
+        for (Node ptr = head; ptr != null; ptr = ptr.getNext()) // Traverse the list
+            action.accept(ptr.getValue());
+    }
+
+    /**
+     * Deletes all nodes in the heap. Handles from before are no longer valid.
      */
-    public String toString() {
+    private void delHeap() {
+        owner = new NodeOwner(); // Invalidates every handle at once
         if (head == null) // If the heap is empty
-            return "[]";
+            return; // Nothing to delete
 
-        Node ptr = head.getNext(); // Start from the second node
-        String str = "[" + head.getValue(); // Initialize string with the value of the head node
+        Node ptr = head;
         while (ptr != null) { // Traverse the list
-            str += ", " + ptr.getValue(); // Append each node's value to the string
-            ptr = ptr.getNext();
+            Node tmp = ptr.getNext();
+            ptr.setNext(null); // Disconnect the current node from the next node
+            if (tmp != null)
+                tmp.setPrev(null); // Disconnect the next node from the current node
+            if (pool != null)
+                pool.release(ptr); // Recycle the current node
+            ptr = tmp; // Move to the next node
         }
-        str += "]";
 
-        return str; // Return the string representation of the heap
+        head = null;
+        tail = null;
+        min = null;
+        size = 0;
     }
 
     /**
-     * Creates a copy of the current heap.
+     * Unlinks a node from the list and recycles it.
+     * The min pointer is not updated.
      *
-     * @return a copy of the current heap
+     * @param node the node to be removed
      */
-    private MinHeap copyHeap() {
-        MinHeap heap = new MinHeap(); // Create a new MinHeap object
+    private void unlink(Node node) {
+        Node ptr1 = node.getPrev();
+        Node ptr2 = node.getNext();
+        node.setPrev(null);
+        node.setNext(null);
+        node.setOwner(null); // The node is no longer a valid handle
+
+        if (ptr1 != null) // If the node is not the head node
+            ptr1.setNext(ptr2); // Disconnect the node from the previous node
+        else
+            head = ptr2; // Update head if the node was the head node
 
-        Node ptr = head;
-        while (ptr != null) { // Traverse the list
-            heap.insert(ptr.getValue()); // Insert each node's value into the new heap
-            ptr = ptr.getNext();
-        }
+        if (ptr2 != null) // If the node is not the tail node
+            ptr2.setPrev(ptr1); // Disconnect the node from the next node
+        else
+            tail = ptr1; // Update tail if the node was the tail node
 
-        return heap; // Return the copied heap
+        if (pool != null)
+            pool.release(node); // Recycle the removed node
+        size--;
     }
 
     /**
-     * Deletes all nodes in the heap.
+     * Scans the list for the node with the minimum value and updates the min pointer.
      */
-    private void delHeap() {
-        if (head == null) // If the heap is empty
-            return; // Nothing to delete
-
+    private void findMin() {
         Node ptr = head;
-        while (ptr.getNext() != null) { // Traverse the list
-            Node tmp = ptr.getNext();
-            ptr.setNext(null); // Disconnect the current node from the next node
-            tmp.setPrev(null); // Disconnect the next node from the current node
-            ptr = tmp; // Move to the next node
+        min = head;
+        long visits = 0; // For the metrics
+        while (ptr != null) { // Traverse the list
+            if (ptr.getValue() < min.getValue()) // If a node with a smaller value is found
+                min = ptr;
+            ptr = ptr.getNext();
+            visits++;
         }
-
-        head = null;
-        tail = null;
-        min = null;
+        recordWork(visits, visits);
     }
 
     /**
@@ -134,13 +189,26 @@ public class MinHeap extends Heap {
      */
     @Override
     public void insert(int value) {
-        Node node = new Node(value); // Create a new node with the given value
+        insertHandle(value);
+    }
+
+    /**
+     * Inserts a new value into the heap and returns its node as a handle, in constant time.
+     *
+     * @param value the value to be inserted
+     * @return the node holding the value
+     */
+    @Override
+    public HeapHandle insertHandle(int value) {
+        Node node = pool != null ? pool.acquire(value) : new Node(value); // Create a new node with the given value
+        node.setOwner(owner);
+        size++;
 
         if (head == null) { // If the heap is empty
             head = node;
             tail = node;
             min = node;
-            return;
+            return node;
         }
 
         tail.setNext(node); // Append the new node to the end of the list
@@ -149,10 +217,47 @@ public class MinHeap extends Heap {
 
         if (min.getValue() > node.getValue()) // If the new node's value is less than the current min
             min = node;
+        return node;
+    }
+
+    /**
+     * Lowers the value of a node in constant time. The list is unordered, so the node stays where it is.
+     *
+     * @param handle the node, as returned by insertHandle
+     * @param newValue the new value, which must not be greater than the current one
+     * @throws IllegalArgumentException if the new value is greater than the current one,
+     *                                  or the handle does not belong to an element of this heap
+     */
+    @Override
+    public void decreaseKey(HeapHandle handle, int newValue) {
+        Node node = nodeOf(handle, owner);
+        checkDecrease(node, newValue);
+        node.setValue(newValue);
+        if (newValue < min.getValue()) // If the node becomes the minimum
+            min = node;
+    }
+
+    /**
+     * Removes a node from the heap.
+     * Takes constant time, unless the node is the minimum, in which case the list is rescanned as in extractMin.
+     *
+     * @param handle the node, as returned by insertHandle
+     * @throws IllegalArgumentException if the handle does not belong to an element of this heap
+     */
+    @Override
+    public void delete(HeapHandle handle) {
+        Node node = nodeOf(handle, owner);
+        boolean wasMin = node == min;
+        unlink(node);
+        if (wasMin)
+            findMin();
     }
 
     /**
      * Builds a heap from an array of integers.
+     * A large array is split across the common ForkJoin pool: each part is linked into a list of nodes
+     * while its minimum is tracked, and the lists are concatenated in array order.
+     * A heap with a node pool is always built on the calling thread, as the pool is not thread-safe.
      *
      * @param arr the array of integers
      */
@@ -160,8 +265,65 @@ public class MinHeap extends Heap {
     public void makeHeap(int[] arr) {
         delHeap();
 
-        for (int i = 0; i < arr.length; i++) // Iterate through the array
-            insert(arr[i]); // Insert each element into the heap
+        if (pool == null && buildInParallel(arr.length)) {
+            LinkTask list = ForkJoinPool.commonPool().invoke(new LinkTask(arr, 0, arr.length));
+            head = list.first;
+            tail = list.last;
+            min = list.min;
+            size = arr.length;
+        } else {
+            insertAll(arr, 0, arr.length); // Link the whole array as one batch
+        }
+    }
+
+    /**
+     * Inserts a batch of values into the heap.
+     * The batch is linked into a separate list while its minimum is tracked, and then spliced onto the tail.
+     *
+     * @param values the array holding the values to be inserted
+     * @param off the index of the first value in the array
+     * @param len the number of values to be inserted
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     */
+    @Override
+    public void insertAll(int[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        if (len == 0)
+            return;
+
+        Node first = pool != null ? pool.acquire(values[off]) : new Node(values[off]);
+        Node last = first;
+        Node batchMin = first;
+        for (int i = off + 1; i < off + len; i++) { // Link the batch
+            Node node = pool != null ? pool.acquire(values[i]) : new Node(values[i]);
+            last.setNext(node);
+            node.setPrev(last);
+            last = node;
+            if (node.getValue() < batchMin.getValue())
+                batchMin = node;
+        }
+
+        if (head == null) { // If the heap is empty
+            head = first;
+            min = batchMin;
+        } else {
+            tail.setNext(first);
+            first.setPrev(tail);
+            if (batchMin.getValue() < min.getValue())
+                min = batchMin;
+        }
+        tail = last;
+        size += len;
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return the number of elements in the heap
+     */
+    @Override
+    public long size() {
+        return size;
     }
 
     /**
@@ -187,77 +349,180 @@ public class MinHeap extends Heap {
             return Integer.MAX_VALUE;
 
         int minVal = min.getValue();
-        Node ptr1 = min.getPrev();
-        Node ptr2 = min.getNext();
-        min.setPrev(null);
-        min.setNext(null);
+        unlink(min);
+        findMin(); // Rescan the list for the new minimum
 
-        if (ptr1 != null) // If min is not the head node
-            ptr1.setNext(ptr2); // Disconnect min from the previous node
-        else
-            head = ptr2; // Update head if min was the head node
+        return minVal;
+    }
 
-        if (ptr2 != null) // If min is not the tail node
-            ptr2.setPrev(ptr1); // Disconnect min from the next node
+    /**
+     * Removes the k smallest values from the heap, in ascending order.
+     * The k smallest nodes are selected in a single pass with a bounded max-heap, and the new minimum
+     * is found with one rescan, so the whole batch takes O(n log k) time instead of k full rescans.
+     *
+     * @param dest the array to receive the values, starting at index 0
+     * @param k the number of values to be extracted
+     * @return the number of values extracted, which is less than k if the heap holds fewer values
+     * @throws IndexOutOfBoundsException if k is negative or greater than the length of the array
+     */
+    @Override
+    public int drainMin(int[] dest, int k) {
+        Objects.checkFromIndexSize(0, k, dest.length);
+        int n = (int) Math.min(k, size);
+        if (n == 0)
+            return 0;
+
+        if (n == size) { // Everything goes, so sort all the values and clear the heap
+            int i = 0;
+            for (Node ptr = head; ptr != null; ptr = ptr.getNext())
+                dest[i++] = ptr.getValue();
+            ArrayUtils.mergeSort(dest, 0, n);
+            delHeap();
+            return n;
+        }
 
-        if (head == null) { // If the heap is now empty
-            tail = null;
-            min = null;
-            return minVal;
+        // Keep the n smallest nodes seen so far in a max-heap, whose root is the largest of them
+        Node[] selected = new Node[n];
+        int count = 0;
+        for (Node ptr = head; ptr != null; ptr = ptr.getNext()) {
+            if (count < n)
+                siftUpMax(selected, count++, ptr);
+            else if (ptr.getValue() < selected[0].getValue())
+                siftDownMax(selected, n, ptr);
         }
 
-        Node ptr = head;
-        min = head;
-        while (ptr != null) { // Traverse the list
-            if (ptr.getValue() < min.getValue()) // If a node with a smaller value is found
-                min = ptr;
-            ptr = ptr.getNext();
+        // Pop the selected nodes from largest to smallest, filling the array from the end
+        for (int i = n - 1; i >= 0; i--) {
+            Node top = selected[0];
+            dest[i] = top.getValue();
+            if (i > 0)
+                siftDownMax(selected, i, selected[i]);
+            unlink(top);
         }
 
-        return minVal;
+        findMin();
+        return n;
     }
 
     /**
-     * Merges the current heap with another heap into this heap.
+     * Adds a node to a max-heap of nodes stored in an array.
      *
-     * @param other the other heap to be merged
+     * @param heap the array holding the max-heap
+     * @param i the number of nodes in the max-heap, which is where the new node starts
+     * @param node the node to be added
+     */
+    private static void siftUpMax(Node[] heap, int i, Node node) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].getValue() >= node.getValue())
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = node;
+    }
+
+    /**
+     * Replaces the root of a max-heap of nodes stored in an array and restores the heap order.
+     *
+     * @param heap the array holding the max-heap
+     * @param n the number of nodes in the max-heap
+     * @param node the node that replaces the root
+     */
+    private static void siftDownMax(Node[] heap, int n, Node node) {
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < n) {
+            if (child + 1 < n && heap[child + 1].getValue() > heap[child].getValue())
+                child++;
+            if (heap[child].getValue() <= node.getValue())
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = node;
+    }
+
+    /**
+     * Merges the current heap with another min-heap into this heap.
+     * The nodes of the other heap are spliced onto the end of this heap in constant time,
+     * and their handles become handles of this heap. At the end, the other heap is empty.
+     *
+     * @param heap the other heap to be merged
+     * @throws IllegalArgumentException if the other heap is not a MinHeap
      */
     @Override
-    public void unionHeap(MinHeap other) {
-        MinHeap unionHeap = null;
-        if (head != null && other.head != null) { // If both heaps are not empty
-            tail.setNext(other.head);
-            other.head.setPrev(tail);
-            unionHeap = copyHeap();
-        } else if (head != null) // If only the current heap is not empty
+    public void unionHeap(Heap heap) {
+        if (!(heap instanceof MinHeap))
+            throw new IllegalArgumentException("Cannot union a MinHeap with a " + heap.getClass().getSimpleName());
+
+        MinHeap other = (MinHeap) heap;
+        if (other == this || other.head == null) // Nothing to merge
             return;
-        else // If only the other heap is not empty
-            unionHeap = other.copyHeap();
 
-        // Clearing both heaps
-        delHeap();
-        other.delHeap();
+        if (head == null) { // If only the other heap is not empty
+            head = other.head;
+            tail = other.tail;
+            min = other.min;
+        } else { // If both heaps are not empty
+            tail.setNext(other.head); // Link the tail of this heap to the head of the other heap
+            other.head.setPrev(tail);
+            tail = other.tail;
 
-        // Copy the union heap into this heap
-        head = unionHeap.head;
-        tail = unionHeap.tail;
-        min = unionHeap.min;
+            if (other.min.getValue() < min.getValue()) // Keep the smaller of the two minimums
+                min = other.min;
+        }
+        size += other.size;
+
+        // The other heap no longer owns its nodes
+        other.owner.mergeInto(owner);
+        other.owner = new NodeOwner();
+        other.head = null;
+        other.tail = null;
+        other.min = null;
+        other.size = 0;
     }
 
     /**
-     * Prints the heap in sorted order.
+     * Passes the values of the heap to a consumer in sorted order.
+     * The values are collected into an array and sorted once, instead of extracting the minimum n times.
      * At the end, the heap is empty.
+     *
+     * @param sink the consumer that receives the values in ascending order
      */
     @Override
-    public void sortHeap() {
-        if (head == null) { // If the heap is empty
-            System.out.println("[]");
-            return;
-        }
+    public void sortHeap(IntConsumer sink) {
+        int[] arr = sortHeapToArray();
+        for (int i = 0; i < arr.length; i++)
+            sink.accept(arr[i]);
+    }
+
+    /**
+     * Saves the heap to a binary snapshot file.
+     *
+     * @param path the path of the snapshot file, which is replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path path) throws IOException {
+        HeapSnapshot.write(path, HeapSnapshot.KIND_MIN_HEAP, false, head);
+    }
 
-        System.out.print("[" + extractMin());
-        while (head != null) // While there are still elements in the heap
-            System.out.print(", " + extractMin());
-        System.out.println("]");
+    /**
+     * Replaces the contents of the heap with the values of a binary snapshot file saved by a MinHeap.
+     *
+     * @param path the path of the snapshot file
+     * @throws IOException if the file cannot be read, or is not a valid snapshot of a MinHeap
+     */
+    public void load(Path path) throws IOException {
+        try (HeapSnapshot snapshot = HeapSnapshot.open(path, HeapSnapshot.KIND_MIN_HEAP)) {
+            delHeap();
+
+            int[] batch = new int[LOAD_BATCH_SIZE];
+            int n;
+            while ((n = snapshot.read(batch, 0, batch.length)) > 0) {
+                for (int i = 0; i < n; i++)
+                    insert(batch[i]);
+            }
+        }
     }
 }
@@ -1,11 +1,13 @@
 /**
  * The Node class represents a node in a doubly linked list.
  * Each node contains an integer value, a reference to the previous node, and a reference to the next node.
+ * A node returned as a handle also refers to the owner of the heap it belongs to.
  */
-public class Node {
+public class Node implements HeapHandle {
     private int value;
     private Node prev;
     private Node next;
+    private NodeOwner owner; // The owner of the heap holding the node, or null if it is not a live handle
 
     /**
      * Constructs a new node with the specified value.
@@ -23,6 +25,7 @@ public class Node {
      *
      * @return the integer value of the node
      */
+    @Override
     public int getValue() {
         return value;
     }
@@ -71,4 +74,22 @@ public class Node {
     public void setNext(Node next) {
         this.next = next;
     }
+
+    /**
+     * Returns the owner of the heap the node was inserted into as a handle.
+     *
+     * @return the owner, or null if the node is not a live handle
+     */
+    NodeOwner getOwner() {
+        return owner;
+    }
+
+    /**
+     * Sets the owner of the heap the node belongs to as a handle.
+     *
+     * @param owner the new owner, or null when the node leaves the heap
+     */
+    void setOwner(NodeOwner owner) {
+        this.owner = owner;
+    }
 }
\ No newline at end of file
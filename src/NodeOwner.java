@@ -0,0 +1,40 @@
+/**
+ * A NodeOwner identifies the heap that the handle nodes pointing to it belong to.
+ * The linked heaps give each handle node their current owner, so a foreign or stale handle can be rejected.
+ * <p>
+ * When a heap is merged into another, its owner is forwarded to the other heap's owner instead of
+ * relabelling every node, so union keeps its cost; resolve follows the forwards, shortening the path as it goes.
+ * When a heap is rebuilt, it takes a new owner, which invalidates every handle from before at once.
+ */
+final class NodeOwner {
+    private NodeOwner forward; // The owner of the heap this one was merged into, or null
+
+    /**
+     * Returns the current owner, following the forwards left by merges.
+     *
+     * @return the owner that this one was finally merged into, or this owner if it was never merged
+     */
+    NodeOwner resolve() {
+        NodeOwner root = this;
+        while (root.forward != null)
+            root = root.forward;
+
+        // Point every owner on the path straight at the root
+        NodeOwner ptr = this;
+        while (ptr != root) {
+            NodeOwner next = ptr.forward;
+            ptr.forward = root;
+            ptr = next;
+        }
+        return root;
+    }
+
+    /**
+     * Forwards this owner to the owner of the heap it is merged into.
+     *
+     * @param target the owner of the heap receiving the nodes
+     */
+    void mergeInto(NodeOwner target) {
+        forward = target;
+    }
+}
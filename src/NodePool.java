@@ -0,0 +1,128 @@
+/**
+ * The NodePool class recycles Node objects, so that heaps under steady insert/extract churn allocate nothing.
+ * Released nodes are kept on a free list and handed out again by acquire.
+ * A pool can be owned by a single heap or shared by several heaps, but it is not thread-safe.
+ * A handle whose element was removed must not be kept: its node may be handed out again as the handle of a new element.
+ */
+public class NodePool {
+    private Node free;          // The free list, linked through the next pointers
+    private int freeCount;      // The number of nodes in the free list
+    private final int maxFree;  // The maximum number of nodes kept in the free list
+
+    private long acquired;      // The number of nodes handed out
+    private long reused;        // The number of nodes handed out from the free list
+    private long released;      // The number of nodes given back
+    private long highWaterMark; // The largest number of nodes in use at the same time
+
+    /**
+     * Constructs an empty pool that keeps every released node.
+     */
+    public NodePool() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs an empty pool that keeps at most the specified number of released nodes.
+     * Nodes released beyond that are left to the garbage collector.
+     *
+     * @param maxFree the maximum number of nodes kept in the free list
+     * @throws IllegalArgumentException if maxFree is negative
+     */
+    public NodePool(int maxFree) {
+        if (maxFree < 0)
+            throw new IllegalArgumentException("maxFree must not be negative, got " + maxFree);
+
+        this.maxFree = maxFree;
+        free = null;
+        freeCount = 0;
+    }
+
+    /**
+     * Returns a node holding the specified value, reusing a released node if one is available.
+     *
+     * @param value the value to be stored in the node
+     * @return an unlinked node holding the value
+     */
+    public Node acquire(int value) {
+        acquired++;
+        long inUse = acquired - released;
+        if (inUse > highWaterMark)
+            highWaterMark = inUse;
+
+        if (free == null) // Nothing to reuse
+            return new Node(value);
+
+        Node node = free;
+        free = node.getNext();
+        freeCount--;
+        reused++;
+
+        node.setNext(null);
+        node.setValue(value);
+        return node;
+    }
+
+    /**
+     * Gives a node back to the pool.
+     * The node must already be unlinked from its heap and must not be used afterwards.
+     *
+     * @param node the node to be released
+     */
+    public void release(Node node) {
+        released++;
+        if (freeCount >= maxFree) // The free list is full
+            return;
+
+        node.setPrev(null);
+        node.setOwner(null); // A recycled node is no longer a handle
+        node.setNext(free);
+        free = node;
+        freeCount++;
+    }
+
+    /**
+     * Returns the number of nodes currently kept in the free list.
+     *
+     * @return the number of free nodes
+     */
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    /**
+     * Returns the largest number of nodes that were in use at the same time.
+     * This is the number of nodes the pool needs to serve the workload without allocating.
+     *
+     * @return the high-water mark of nodes in use
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Returns the number of nodes handed out by the pool.
+     *
+     * @return the number of acquired nodes
+     */
+    public long getAcquiredCount() {
+        return acquired;
+    }
+
+    /**
+     * Returns the number of nodes that were handed out from the free list instead of being allocated.
+     *
+     * @return the number of reused nodes
+     */
+    public long getReusedCount() {
+        return reused;
+    }
+
+    /**
+     * Returns the fraction of acquired nodes that were reused instead of allocated.
+     *
+     * @return the reuse rate, between 0 and 1
+     */
+    public double getReuseRate() {
+        return acquired == 0 ? 0.0 : (double) reused / acquired;
+    }
+}
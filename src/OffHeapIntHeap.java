@@ -0,0 +1,457 @@
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The OffHeapIntHeap class implements a minimum heap whose elements are stored outside the Java heap.
+ * The elements form an implicit 4-ary heap spread over fixed-size segments of direct memory,
+ * so the heap can hold billions of values without adding to garbage collection work.
+ * Segments are allocated as the heap grows and released as it shrinks, and close() releases all of them at once.
+ */
+public class OffHeapIntHeap extends Heap implements AutoCloseable {
+    private static final int SHIFT = 2;                  // log2 of the arity
+    private static final int SEGMENT_SHIFT = 20;         // Each segment holds 2^20 values (4 MB)
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final Object UNSAFE;           // sun.misc.Unsafe, used to free direct memory explicitly
+    private static final Method INVOKE_CLEANER;   // Unsafe.invokeCleaner(ByteBuffer), or null if unavailable
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The memory is then released by the garbage collector when the buffers become unreachable
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private ByteBuffer[] buffers; // The direct buffers backing the segments
+    private IntBuffer[] segments; // Int views of the buffers
+    private int segmentCount;     // The number of allocated segments
+    private long size;            // The number of elements in the heap
+
+    /**
+     * Constructs an empty OffHeapIntHeap.
+     * No direct memory is allocated until the first element is inserted.
+     */
+    public OffHeapIntHeap() {
+        buffers = new ByteBuffer[8];
+        segments = new IntBuffer[8];
+        segmentCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory held by the heap.
+     *
+     * @return the number of allocated off-heap bytes
+     */
+    public long getAllocatedBytes() {
+        return (long) segmentCount * SEGMENT_SIZE * Integer.BYTES;
+    }
+
+    /**
+     * Passes each value of the heap to an action, in heap order, without removing it.
+     *
+     * @param action the action to be performed on each value
+     */
+    @Override
+    public void forEachValue(IntConsumer action) {
+        for (long i = 0; i < size; i++)
+            action.accept(get(i));
+    }
+
+    /**
+     * Returns the element at the specified index.
+     *
+     * @param i the index of the element
+     * @return the element at the index
+     */
+    private int get(long i) {
+        return segments[(int) (i >>> SEGMENT_SHIFT)].get((int) (i & SEGMENT_MASK));
+    }
+
+    /**
+     * Stores a value at the specified index.
+     *
+     * @param i the index of the element
+     * @param value the value to be stored
+     */
+    private void set(long i, int value) {
+        segments[(int) (i >>> SEGMENT_SHIFT)].put((int) (i & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Allocates segments until the heap can hold at least the specified number of elements.
+     *
+     * @param capacity the required capacity
+     */
+    private void ensureCapacity(long capacity) {
+        while (((long) segmentCount << SEGMENT_SHIFT) < capacity) {
+            if (segmentCount == segments.length) { // Grow the segment tables
+                buffers = Arrays.copyOf(buffers, segmentCount * 2);
+                segments = Arrays.copyOf(segments, segmentCount * 2);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SEGMENT_SIZE * Integer.BYTES).order(ByteOrder.nativeOrder());
+            buffers[segmentCount] = buffer;
+            segments[segmentCount] = buffer.asIntBuffer();
+            segmentCount++;
+        }
+    }
+
+    /**
+     * Releases the last segment.
+     */
+    private void releaseLastSegment() {
+        segmentCount--;
+        free(buffers[segmentCount]);
+        buffers[segmentCount] = null;
+        segments[segmentCount] = null;
+    }
+
+    /**
+     * Releases the memory of a direct buffer without waiting for the garbage collector, if the JVM allows it.
+     *
+     * @param buffer the direct buffer to be released, which must not be used afterwards
+     */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null)
+            return;
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // Leave the buffer to the garbage collector
+        }
+    }
+
+    /**
+     * Removes all elements and releases all the off-heap memory held by the heap.
+     * The heap stays usable, and allocates new segments when elements are inserted again.
+     */
+    @Override
+    public void close() {
+        while (segmentCount > 0)
+            releaseLastSegment();
+        size = 0;
+    }
+
+    /**
+     * Moves a value up from the specified index until its parent is not greater.
+     *
+     * @param i the index of the hole where the value starts
+     * @param value the value to be placed
+     */
+    private void siftUp(long i, int value) {
+        while (i > 0) {
+            long parent = (i - 1) >>> SHIFT;
+            int p = get(parent);
+            if (p <= value)
+                break;
+            set(i, p); // Move the parent down into the hole
+            i = parent;
+        }
+        set(i, value);
+    }
+
+    /**
+     * Moves a value down from the specified index until none of its children is smaller.
+     *
+     * @param i the index of the hole where the value starts
+     * @param value the value to be placed
+     */
+    private void siftDown(long i, int value) {
+        long child;
+        while ((child = (i << SHIFT) + 1) < size) {
+            // Find the smallest of the children
+            long end = Math.min(child + (1 << SHIFT), size);
+            long best = child;
+            int bestVal = get(child);
+            for (long c = child + 1; c < end; c++) {
+                int v = get(c);
+                if (v < bestVal) {
+                    best = c;
+                    bestVal = v;
+                }
+            }
+
+            if (bestVal >= value)
+                break;
+            set(i, bestVal); // Move the smallest child up into the hole
+            i = best;
+        }
+        set(i, value);
+    }
+
+    /**
+     * Restores the heap order of all the elements bottom-up (Floyd's method) in linear time.
+     * A large heap is restored level by level, splitting each wide level across the common ForkJoin pool,
+     * as the subtrees below one level are disjoint.
+     */
+    private void heapify() {
+        long lastParent = (size - 2) >> SHIFT;
+        if (!buildInParallel(size)) {
+            for (long i = lastParent; i >= 0; i--) // From the last parent back to the root
+                siftDown(i, get(i));
+            return;
+        }
+
+        long levelStart = 0; // The first index of the level holding the last parent
+        while ((levelStart << SHIFT) + 1 <= lastParent)
+            levelStart = (levelStart << SHIFT) + 1;
+        for (long end = lastParent + 1; end > 0; end = levelStart, levelStart = (levelStart - 1) >> SHIFT) {
+            if (end - levelStart > PARALLEL_CHUNK_SIZE) {
+                ForkJoinPool.commonPool().invoke(new HeapifyTask(levelStart, end));
+            } else {
+                for (long i = end - 1; i >= levelStart; i--)
+                    siftDown(i, get(i));
+            }
+        }
+    }
+
+    /**
+     * A fork/join task that sifts down every element in a range of one level of the heap,
+     * by splitting the range in halves until each is small enough.
+     * Only absolute gets and puts are used on the segments, so tasks on disjoint subtrees do not interfere.
+     */
+    private final class HeapifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long lo, hi;
+
+        HeapifyTask(long lo, long hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= PARALLEL_CHUNK_SIZE) {
+                for (long i = hi - 1; i >= lo; i--)
+                    siftDown(i, OffHeapIntHeap.this.get(i)); // Not ForkJoinTask.get
+                return;
+            }
+
+            long mid = (lo + hi) >>> 1;
+            invokeAll(new HeapifyTask(lo, mid), new HeapifyTask(mid, hi));
+        }
+    }
+
+    /**
+     * Inserts a new value into the heap.
+     *
+     * @param value the value to be inserted
+     */
+    @Override
+    public void insert(int value) {
+        ensureCapacity(size + 1);
+        siftUp(size++, value);
+    }
+
+    /**
+     * Builds a heap from an array of integers in linear time.
+     * The array itself is not modified.
+     *
+     * @param arr the array of integers
+     */
+    @Override
+    public void makeHeap(int[] arr) {
+        close();
+        ensureCapacity(arr.length);
+
+        // Copy the array into the segments
+        for (int from = 0, seg = 0; from < arr.length; from += SEGMENT_SIZE, seg++) {
+            IntBuffer segment = segments[seg];
+            segment.position(0);
+            segment.put(arr, from, Math.min(SEGMENT_SIZE, arr.length - from));
+        }
+        size = arr.length;
+        heapify();
+    }
+
+    /**
+     * Builds a heap from a stream of integers in linear time.
+     * The values are appended as they arrive and the heap order is restored once at the end.
+     *
+     * @param values the stream of integers
+     */
+    @Override
+    public void makeHeap(IntStream values) {
+        close();
+        values.sequential().forEachOrdered(this::append);
+        heapify();
+    }
+
+    /**
+     * Builds a heap from whitespace-separated integers read from a channel, in linear time.
+     * The values are appended as they are parsed and the heap order is restored once at the end.
+     *
+     * @param channel the channel to read from
+     * @throws IOException if the channel cannot be read
+     */
+    @Override
+    public void makeHeap(ReadableByteChannel channel) throws IOException {
+        close();
+        ArrayUtils.readInts(channel, this::append);
+        heapify();
+    }
+
+    /**
+     * Appends a value to the end of the heap without restoring the heap order.
+     *
+     * @param value the value to be appended
+     */
+    private void append(int value) {
+        ensureCapacity(size + 1);
+        set(size++, value);
+    }
+
+    /**
+     * Inserts a batch of values into the heap.
+     * A batch that is large compared to the heap is appended and the heap is rebuilt in linear time,
+     * while a small batch is sifted up value by value.
+     *
+     * @param values the array holding the values to be inserted
+     * @param off the index of the first value in the array
+     * @param len the number of values to be inserted
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     */
+    @Override
+    public void insertAll(int[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        ensureCapacity(size + len);
+        if (len > (size >>> 2)) { // Rebuilding is cheaper than len sift-ups
+            for (int i = off; i < off + len; i++)
+                set(size++, values[i]);
+            heapify();
+        } else {
+            for (int i = off; i < off + len; i++)
+                siftUp(size++, values[i]);
+        }
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return the number of elements in the heap
+     */
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the minimum value in the heap.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int getMinVal() {
+        if (size > 0)
+            return get(0);
+        return Integer.MAX_VALUE; // If the heap is empty
+    }
+
+    /**
+     * Removes and returns the minimum value in the heap.
+     * Once more than one segment is left unused, the last segment is released.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int extractMin() {
+        if (size == 0) // If the heap is empty
+            return Integer.MAX_VALUE;
+
+        int minVal = get(0);
+        int last = get(--size);
+        if (size > 0)
+            siftDown(0, last); // Move the last element into the root's place
+
+        // Keep one spare segment, so that alternating inserts and extracts do not reallocate
+        long needed = (size + SEGMENT_MASK) >>> SEGMENT_SHIFT;
+        if (segmentCount > needed + 1)
+            releaseLastSegment();
+
+        return minVal;
+    }
+
+    /**
+     * Removes the k smallest values from the heap, in ascending order.
+     *
+     * @param dest the array to receive the values, starting at index 0
+     * @param k the number of values to be extracted
+     * @return the number of values extracted, which is less than k if the heap holds fewer values
+     * @throws IndexOutOfBoundsException if k is negative or greater than the length of the array
+     */
+    @Override
+    public int drainMin(int[] dest, int k) {
+        Objects.checkFromIndexSize(0, k, dest.length);
+        int n = (int) Math.min(k, size);
+        for (int i = 0; i < n; i++) {
+            dest[i] = get(0);
+            int last = get(--size);
+            if (size > 0)
+                siftDown(0, last); // Move the last element into the root's place
+        }
+
+        // Release the segments that are no longer needed, keeping one spare
+        long needed = (size + SEGMENT_MASK) >>> SEGMENT_SHIFT;
+        while (segmentCount > needed + 1)
+            releaseLastSegment();
+
+        return n;
+    }
+
+    /**
+     * Merges the current heap with another off-heap heap into this heap.
+     * A small heap is inserted element by element, while a large one is appended and the heap is rebuilt in linear time.
+     * At the end, the other heap is empty and its memory is released.
+     *
+     * @param heap the other heap to be merged
+     * @throws IllegalArgumentException if the other heap is not an OffHeapIntHeap
+     */
+    @Override
+    public void unionHeap(Heap heap) {
+        if (!(heap instanceof OffHeapIntHeap))
+            throw new IllegalArgumentException("Cannot union an OffHeapIntHeap with a " + heap.getClass().getSimpleName());
+
+        OffHeapIntHeap other = (OffHeapIntHeap) heap;
+        if (other == this || other.size == 0)
+            return;
+
+        long n = size;
+        long m = other.size;
+        ensureCapacity(n + m);
+        if (m > (n >>> 2)) { // Rebuilding is cheaper than m sift-ups
+            for (long j = 0; j < m; j++)
+                set(n + j, other.get(j));
+            size = n + m;
+            heapify();
+        } else {
+            for (long j = 0; j < m; j++)
+                siftUp(size++, other.get(j));
+        }
+
+        other.close();
+    }
+}
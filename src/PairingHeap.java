@@ -0,0 +1,332 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
+/**
+ * The PairingHeap class implements a minimum heap as a pairing heap.
+ * Insert and union take constant time, and extracting the minimum takes O(log n) amortized time.
+ */
+public class PairingHeap extends Heap {
+    private PairingNode root; // The root of the heap, which holds the minimum value
+    private long size;        // The number of elements in the heap
+    private NodeOwner owner;  // The owner of the handles of the heap, replaced when the heap is rebuilt
+
+    /**
+     * Constructs an empty PairingHeap.
+     */
+    public PairingHeap() {
+        root = null;
+        size = 0;
+        owner = new NodeOwner();
+    }
+
+    /**
+     * Returns the root node of the heap.
+     *
+     * @return the root node of the heap
+     */
+    public PairingNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Passes each value of the heap to an action, in preorder starting from the root, without removing it.
+     *
+     * @param action the action to be performed on each value
+     */
+    @Override
+    public void forEachValue(IntConsumer action) {
+        if (root == null) // If the heap is empty
+            return;
+
+        ArrayDeque<PairingNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) { // Preorder traversal of the tree
+            PairingNode ptr = stack.pop();
+            action.accept(ptr.getValue());
+
+            if (ptr.getNext() != null) // Visit the right sibling after the subtree
+                stack.push((PairingNode) ptr.getNext());
+            if (ptr.getChild() != null) // Visit the children first
+                stack.push(ptr.getChild());
+        }
+    }
+
+    /**
+     * Links two trees, making the root with the larger value the leftmost child of the other.
+     * Both nodes must be roots, with no siblings.
+     *
+     * @param a the root of the first tree, may be null
+     * @param b the root of the second tree, may be null
+     * @return the root of the linked tree
+     */
+    private static PairingNode meld(PairingNode a, PairingNode b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+
+        if (b.getValue() < a.getValue()) { // Keep the smaller root on top
+            PairingNode tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        PairingNode child = a.getChild();
+        b.setNext(child); // The old leftmost child becomes b's right sibling
+        if (child != null)
+            child.setPrev(b);
+        b.setPrev(a); // The leftmost child points back to its parent
+        a.setChild(b);
+
+        return a;
+    }
+
+    /**
+     * Combines a list of sibling trees into a single tree using the two-pass pairing method.
+     *
+     * @param first the leftmost tree in the sibling list
+     * @return the root of the combined tree, or null if the list is empty
+     */
+    private static PairingNode combineSiblings(PairingNode first) {
+        PairingNode pairs = null; // Stack of the paired trees, linked through their next pointers
+
+        // First pass: meld the trees in pairs from left to right
+        while (first != null) {
+            PairingNode a = first;
+            PairingNode b = (PairingNode) a.getNext();
+            first = b == null ? null : (PairingNode) b.getNext();
+
+            a.setPrev(null);
+            a.setNext(null);
+            if (b != null) {
+                b.setPrev(null);
+                b.setNext(null);
+            }
+
+            PairingNode merged = meld(a, b);
+            merged.setNext(pairs);
+            pairs = merged;
+        }
+
+        // Second pass: meld the pairs from right to left
+        PairingNode result = null;
+        while (pairs != null) {
+            PairingNode next = (PairingNode) pairs.getNext();
+            pairs.setNext(null);
+            result = meld(result, pairs);
+            pairs = next;
+        }
+
+        return result;
+    }
+
+    /**
+     * Inserts a new value into the heap.
+     *
+     * @param value the value to be inserted
+     */
+    @Override
+    public void insert(int value) {
+        insertHandle(value);
+    }
+
+    /**
+     * Inserts a new value into the heap and returns its node as a handle, in constant time.
+     *
+     * @param value the value to be inserted
+     * @return the node holding the value
+     */
+    @Override
+    public HeapHandle insertHandle(int value) {
+        PairingNode node = new PairingNode(value);
+        node.setOwner(owner);
+        root = meld(root, node);
+        size++;
+        return node;
+    }
+
+    /**
+     * Lowers the value of a node. The subtree of the node is cut from its parent and melded with the root,
+     * which takes constant time (O(log n) amortized in the analysis of pairing heaps).
+     *
+     * @param handle the node, as returned by insertHandle
+     * @param newValue the new value, which must not be greater than the current one
+     * @throws IllegalArgumentException if the new value is greater than the current one,
+     *                                  or the handle does not belong to an element of this heap
+     */
+    @Override
+    public void decreaseKey(HeapHandle handle, int newValue) {
+        PairingNode node = (PairingNode) nodeOf(handle, owner); // Only pairing nodes carry the owner of a PairingHeap
+        checkDecrease(node, newValue);
+        node.setValue(newValue);
+        if (node == root)
+            return;
+
+        cut(node);
+        root = meld(root, node);
+    }
+
+    /**
+     * Removes a node from the heap. The subtree of the node is cut from its parent,
+     * its children are combined as in extractMin, and the result is melded with the root, in O(log n) amortized time.
+     *
+     * @param handle the node, as returned by insertHandle
+     * @throws IllegalArgumentException if the handle does not belong to an element of this heap
+     */
+    @Override
+    public void delete(HeapHandle handle) {
+        PairingNode node = (PairingNode) nodeOf(handle, owner); // Only pairing nodes carry the owner of a PairingHeap
+        if (node == root) {
+            extractMin();
+            return;
+        }
+
+        cut(node);
+        PairingNode children = node.getChild();
+        node.setChild(null);
+        node.setOwner(null); // The node is no longer a valid handle
+        root = meld(root, combineSiblings(children));
+        size--;
+    }
+
+    /**
+     * Detaches a node that is not the root, together with its subtree, from its parent and siblings.
+     *
+     * @param node the node to be cut
+     */
+    private static void cut(PairingNode node) {
+        PairingNode prev = (PairingNode) node.getPrev(); // The parent if the node is the leftmost child, else the left sibling
+        Node next = node.getNext();
+        if (prev.getChild() == node)
+            prev.setChild((PairingNode) next);
+        else
+            prev.setNext(next);
+        if (next != null)
+            next.setPrev(prev);
+        node.setPrev(null);
+        node.setNext(null);
+    }
+
+    /**
+     * Builds a heap from an array of integers. Handles from before are no longer valid.
+     * A large array is split across the common ForkJoin pool: each part is built into a separate tree,
+     * and the trees are melded pairwise, which also leaves the overall minimum at the root.
+     *
+     * @param arr the array of integers
+     */
+    @Override
+    public void makeHeap(int[] arr) {
+        root = null;
+        size = 0;
+        owner = new NodeOwner(); // Invalidates every handle at once
+
+        if (buildInParallel(arr.length)) {
+            root = ForkJoinPool.commonPool().invoke(new BuildTask(arr, 0, arr.length));
+            size = arr.length;
+            return;
+        }
+        for (int i = 0; i < arr.length; i++) // Iterate through the array
+            insert(arr[i]); // Insert each element into the heap
+    }
+
+    /**
+     * A fork/join task that builds a range of an array into a tree by building both halves in parallel
+     * and melding them.
+     */
+    private static final class BuildTask extends RecursiveTask<PairingNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] arr;
+        private final int lo, hi;
+
+        BuildTask(int[] arr, int lo, int hi) {
+            this.arr = arr;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected PairingNode compute() {
+            if (hi - lo <= PARALLEL_CHUNK_SIZE) {
+                PairingNode tree = null;
+                for (int i = lo; i < hi; i++)
+                    tree = meld(tree, new PairingNode(arr[i]));
+                return tree;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            BuildTask left = new BuildTask(arr, lo, mid);
+            BuildTask right = new BuildTask(arr, mid, hi);
+            invokeAll(left, right);
+            return meld(left.join(), right.join());
+        }
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return the number of elements in the heap
+     */
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the minimum value in the heap.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int getMinVal() {
+        if (root != null)
+            return root.getValue();
+        return Integer.MAX_VALUE; // If the heap is empty
+    }
+
+    /**
+     * Removes and returns the minimum value in the heap.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int extractMin() {
+        if (root == null) // If the heap is empty
+            return Integer.MAX_VALUE;
+
+        int minVal = root.getValue();
+        PairingNode children = root.getChild();
+        root.setChild(null);
+        root.setOwner(null); // The node is no longer a valid handle
+        root = combineSiblings(children); // The children form the new heap
+        size--;
+
+        return minVal;
+    }
+
+    /**
+     * Merges the current heap with another pairing heap into this heap, in constant time.
+     * The handles of the other heap become handles of this heap. At the end, the other heap is empty.
+     *
+     * @param heap the other heap to be merged
+     * @throws IllegalArgumentException if the other heap is not a PairingHeap
+     */
+    @Override
+    public void unionHeap(Heap heap) {
+        if (!(heap instanceof PairingHeap))
+            throw new IllegalArgumentException("Cannot union a PairingHeap with a " + heap.getClass().getSimpleName());
+
+        PairingHeap other = (PairingHeap) heap;
+        if (other == this)
+            return;
+
+        root = meld(root, other.root);
+        size += other.size;
+        other.owner.mergeInto(owner);
+        other.owner = new NodeOwner();
+        other.root = null;
+        other.size = 0;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * The PairingNode class represents a node in a pairing heap.
+ * In addition to the value and the previous/next pointers inherited from Node, it holds a pointer to its leftmost child.
+ * The next pointer links to the right sibling, and the previous pointer links to the left sibling,
+ * or to the parent if the node is the leftmost child.
+ */
+public class PairingNode extends Node {
+    private PairingNode child;
+
+    /**
+     * Constructs a new pairing node with the specified value.
+     *
+     * @param value the integer value to be stored in the node
+     */
+    public PairingNode(int value) {
+        super(value);
+        child = null;
+    }
+
+    /**
+     * Returns the leftmost child of the node.
+     *
+     * @return the leftmost child, or null if the node has no children
+     */
+    public PairingNode getChild() {
+        return child;
+    }
+
+    /**
+     * Sets the leftmost child of the node.
+     *
+     * @param child the new leftmost child
+     */
+    public void setChild(PairingNode child) {
+        this.child = child;
+    }
+}
@@ -1,10 +1,15 @@
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
  * The Program class provides methods to interact with and manipulate MinHeap and SortedHeap objects through a console interface.
  */
 public class Program {
+    private static final int PREVIEW_SIZE = 10; // The number of elements shown at each end of a heap after every operation
+
     static Scanner input = new Scanner(System.in);
+    private static final Map<String, HeapMetrics> published = new HashMap<>(); // The metrics published over JMX, by heap name
 
     /**
      * Consumes invalid input from the scanner until a valid integer is entered.
@@ -24,23 +29,66 @@ public class Program {
         System.out.println("A:\n\t1. Make-Heap\n\t2. Insert\n\t3. Minimum\n\t4. Extract-Minimum\n\t5. Heap-Sort");
         System.out.println("B:\n\t6. Make-Heap\n\t7. Insert\n\t8. Minimum\n\t9. Extract-Minimum\n\t10. Heap-Sort");
         System.out.println("11. Union\n12. Stop");
+        if (HeapMetrics.ENABLED)
+            System.out.println("13. Metrics");
         System.out.println("Please enter your choice:");
     }
 
+    /**
+     * Creates an empty heap of the chosen implementation.
+     *
+     * @param implementation the number of the implementation, as listed in the main menu
+     * @return a new empty heap, or null if there is no such implementation
+     */
+    public static Heap createHeap(int implementation) {
+        switch(implementation) {
+            case 1:
+                return new MinHeap();
+            case 2:
+                return new SortedHeap();
+            case 3:
+                return new PairingHeap();
+            case 4:
+                return new IntArrayHeap();
+            case 5:
+                return new OffHeapIntHeap();
+            case 6:
+                return new ConcurrentHeap();
+            case 7:
+                return new RadixHeap();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Wraps a heap with metrics and publishes them as a JMX MBean, replacing the metrics of an earlier heap of the same name.
+     *
+     * @param heap the heap to be instrumented
+     * @param name the name of the heap
+     * @return the instrumented heap
+     */
+    private static Heap instrument(Heap heap, String name) {
+        InstrumentedHeap instrumented = new InstrumentedHeap(heap);
+        if (published.containsKey(name))
+            published.get(name).unregister();
+        instrumented.getMetrics().register(name);
+        published.put(name, instrumented.getMetrics());
+        return instrumented;
+    }
+
     /**
      * Runs the user interface for manipulating Heap objects.
+     *
+     * @param implementation the number of the heap implementation, as listed in the main menu
      */
-    public static void heapImplement(boolean isMinHeap) {
-        Heap A, B;
-        // Initialize two heap instances based on the isMinHeap flag
-        if(isMinHeap) {
-            // If isMinHeap is true, create two instances of MinHeap
-            A = new MinHeap();
-            B = new MinHeap();
-        } else {
-            // If isMinHeap is false, create two instances of SortedHeap
-            A = new SortedHeap();
-            B = new SortedHeap();
+    public static void heapImplement(int implementation) {
+        // Initialize two heap instances of the chosen implementation
+        Heap A = createHeap(implementation);
+        Heap B = createHeap(implementation);
+        if (HeapMetrics.ENABLED) { // Instrument both heaps and publish their metrics over JMX
+            A = instrument(A, "A");
+            B = instrument(B, "B");
         }
         int[] arr;
         int minVal;
@@ -64,7 +112,11 @@ public class Program {
                     consumeInvalidInput(); // Ensure valid number input
                     int numA = input.nextInt();
                     input.nextLine(); // Consume the newline character
-                    A.insert(numA);
+                    try {
+                        A.insert(numA);
+                    } catch (IllegalArgumentException e) { // A radix heap rejects values below its last minimum
+                        System.out.println(e.getMessage());
+                    }
                     break;
 
                 case 3:
@@ -100,7 +152,11 @@ public class Program {
                     consumeInvalidInput(); // Ensure valid number input
                     int numB = input.nextInt();
                     input.nextLine(); // Consume the newline character
-                    B.insert(numB);
+                    try {
+                        B.insert(numB);
+                    } catch (IllegalArgumentException e) { // A radix heap rejects values below its last minimum
+                        System.out.println(e.getMessage());
+                    }
                     break;
 
                 case 8:
@@ -125,20 +181,34 @@ public class Program {
                     break;
 
                 case 11:
-                    A.unionHeap(B);
+                    try {
+                        A.unionHeap(B);
+                    } catch (IllegalArgumentException e) { // A radix heap rejects values below its last minimum
+                        System.out.println(e.getMessage());
+                    }
                     break;
 
                 case 12:
                     input.close(); // Close the scanner
                     System.exit(0); // Exit the program
 
+                case 13:
+                    if (!HeapMetrics.ENABLED) {
+                        System.out.println("You have entered a wrong number of operation!");
+                        System.out.println("Please try again.");
+                        break;
+                    }
+                    System.out.print("Metrics of A:\n" + ((InstrumentedHeap) A).getMetrics().dump());
+                    System.out.print("Metrics of B:\n" + ((InstrumentedHeap) B).getMetrics().dump());
+                    break;
+
                 default:
                     System.out.println("You have entered a wrong number of operation!");
                     System.out.println("Please try again.");
                     break;
             }
-            System.out.println("A = " + A);
-            System.out.println("B = " + B);
+            System.out.println("A = " + A.toString(PREVIEW_SIZE));
+            System.out.println("B = " + B.toString(PREVIEW_SIZE));
         }
     }
 }
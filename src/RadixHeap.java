@@ -0,0 +1,242 @@
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * The RadixHeap class implements a monotone minimum heap as a radix heap, for workloads such as event simulation
+ * or Dijkstra's algorithm with integer weights, where no value smaller than the last extracted minimum is inserted.
+ * <p>
+ * The values are kept in 33 buckets of primitive arrays. Bucket 0 holds the values equal to the last extracted
+ * minimum, and bucket b &gt; 0 holds the values whose highest bit differing from it is bit b-1.
+ * Insert appends to a bucket in constant time. When bucket 0 is empty, extractMin takes the smallest value
+ * of the first non-empty bucket as the new last minimum and redistributes that bucket into lower ones.
+ * A value moves down at most 32 times, so extractMin takes O(log C) amortized time for values spanning a range C.
+ * <p>
+ * Inserting a value smaller than the last extracted minimum throws an IllegalArgumentException.
+ * The bound is kept when the heap becomes empty, and only makeHeap resets it.
+ */
+public class RadixHeap extends Heap {
+    private static final int BUCKETS = Integer.SIZE + 1;
+    private static final int INITIAL_BUCKET_CAPACITY = 8;
+
+    private final int[][] buckets = new int[BUCKETS][]; // The values of each bucket, in no particular order
+    private final int[] counts = new int[BUCKETS];      // The number of values in each bucket
+    private final int[] mins = new int[BUCKETS];        // The smallest value of each non-empty bucket
+    private int last;  // The last extracted minimum, which every value in the heap is at least
+    private long size; // The number of elements in the heap
+
+    /**
+     * Constructs an empty RadixHeap that accepts any value.
+     */
+    public RadixHeap() {
+        for (int b = 0; b < BUCKETS; b++)
+            buckets[b] = new int[INITIAL_BUCKET_CAPACITY];
+        clear();
+    }
+
+    /**
+     * Empties the heap and lowers the bound on inserted values to Integer.MIN_VALUE.
+     */
+    private void clear() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(mins, Integer.MAX_VALUE);
+        last = Integer.MIN_VALUE;
+        size = 0;
+    }
+
+    /**
+     * Returns the last extracted minimum, which no inserted value may be smaller than.
+     *
+     * @return the smallest value the heap accepts, or Integer.MIN_VALUE if nothing was extracted since makeHeap
+     */
+    public int getLastExtracted() {
+        return last;
+    }
+
+    /**
+     * Returns the bucket of a value, from the highest bit in which it differs from the last extracted minimum.
+     *
+     * @param value the value, which must not be smaller than the last extracted minimum
+     * @return the index of the bucket
+     */
+    private int bucketOf(int value) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(value ^ last);
+    }
+
+    /**
+     * Appends a value to a bucket.
+     *
+     * @param b the index of the bucket
+     * @param value the value to be appended
+     */
+    private void push(int b, int value) {
+        int n = counts[b];
+        if (n == buckets[b].length)
+            buckets[b] = Arrays.copyOf(buckets[b], n + (n >> 1) + 1);
+        buckets[b][n] = value;
+        counts[b] = n + 1;
+        if (value < mins[b])
+            mins[b] = value;
+    }
+
+    /**
+     * Checks that a value can be inserted.
+     *
+     * @param value the value to be inserted
+     * @throws IllegalArgumentException if the value is smaller than the last extracted minimum
+     */
+    private void checkMonotone(int value) {
+        if (value < last)
+            throw new IllegalArgumentException("Cannot insert " + value
+                    + " into a RadixHeap: it is smaller than the last extracted minimum " + last);
+    }
+
+    /**
+     * Passes each value of the heap to an action, bucket by bucket, without removing it.
+     *
+     * @param action the action to be performed on each value
+     */
+    @Override
+    public void forEachValue(IntConsumer action) {
+        for (int b = 0; b < BUCKETS; b++) {
+            int[] bucket = buckets[b];
+            for (int i = 0; i < counts[b]; i++)
+                action.accept(bucket[i]);
+        }
+    }
+
+    /**
+     * Builds a heap from an array of integers, which may hold any values.
+     * The bound on inserted values is reset first. The array itself is not modified.
+     *
+     * @param arr the array of integers
+     */
+    @Override
+    public void makeHeap(int[] arr) {
+        clear();
+        insertAll(arr, 0, arr.length);
+    }
+
+    /**
+     * Inserts a new value into the heap in constant time.
+     *
+     * @param value the value to be inserted
+     * @throws IllegalArgumentException if the value is smaller than the last extracted minimum
+     */
+    @Override
+    public void insert(int value) {
+        checkMonotone(value);
+        push(bucketOf(value), value);
+        size++;
+    }
+
+    /**
+     * Inserts a batch of values into the heap. If any value is smaller than the last extracted minimum,
+     * nothing is inserted.
+     *
+     * @param values the array holding the values to be inserted
+     * @param off the index of the first value in the array
+     * @param len the number of values to be inserted
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     * @throws IllegalArgumentException if a value is smaller than the last extracted minimum
+     */
+    @Override
+    public void insertAll(int[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        for (int i = off; i < off + len; i++)
+            checkMonotone(values[i]);
+        for (int i = off; i < off + len; i++)
+            push(bucketOf(values[i]), values[i]);
+        size += len;
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return the number of elements in the heap
+     */
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the minimum value in the heap, the smallest value of the first non-empty bucket.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int getMinVal() {
+        for (int b = 0; b < BUCKETS; b++) {
+            if (counts[b] > 0)
+                return mins[b];
+        }
+        return Integer.MAX_VALUE; // If the heap is empty
+    }
+
+    /**
+     * Removes and returns the minimum value in the heap.
+     * If bucket 0 is empty, the first non-empty bucket is redistributed around its smallest value first.
+     * Afterwards, values smaller than the extracted one can no longer be inserted.
+     *
+     * @return the minimum value in the heap, or Integer.MAX_VALUE if the heap is empty
+     */
+    @Override
+    public int extractMin() {
+        if (size == 0) // If the heap is empty
+            return Integer.MAX_VALUE;
+
+        if (counts[0] == 0) {
+            int b = 1;
+            while (counts[b] == 0) // Find the first non-empty bucket
+                b++;
+
+            // Every value of the bucket moves to a lower one, and its minimum to bucket 0
+            last = mins[b];
+            int[] bucket = buckets[b];
+            int n = counts[b];
+            counts[b] = 0;
+            mins[b] = Integer.MAX_VALUE;
+            for (int i = 0; i < n; i++)
+                push(bucketOf(bucket[i]), bucket[i]);
+            recordWork(n, n);
+        }
+
+        counts[0]--;
+        if (counts[0] == 0)
+            mins[0] = Integer.MAX_VALUE;
+        size--;
+        return last; // Every value in bucket 0 equals the last minimum
+    }
+
+    /**
+     * Merges the current heap with another radix heap into this heap. At the end, the other heap is empty.
+     * The values of the other heap must not be smaller than the last minimum extracted from this heap.
+     *
+     * @param heap the other heap to be merged
+     * @throws IllegalArgumentException if the other heap is not a RadixHeap, or holds a value smaller than
+     *                                  the last minimum extracted from this heap
+     */
+    @Override
+    public void unionHeap(Heap heap) {
+        if (!(heap instanceof RadixHeap))
+            throw new IllegalArgumentException("Cannot union a RadixHeap with a " + heap.getClass().getSimpleName());
+
+        RadixHeap other = (RadixHeap) heap;
+        if (other == this || other.size == 0)
+            return;
+        checkMonotone(other.getMinVal());
+
+        for (int b = 0; b < BUCKETS; b++) {
+            int[] bucket = other.buckets[b];
+            for (int i = 0; i < other.counts[b]; i++)
+                push(bucketOf(bucket[i]), bucket[i]);
+        }
+        size += other.size;
+
+        // Empty the other heap, keeping its bound
+        Arrays.fill(other.counts, 0);
+        Arrays.fill(other.mins, Integer.MAX_VALUE);
+        other.size = 0;
+    }
+}
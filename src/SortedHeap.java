@@ -1,17 +1,125 @@
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
 /**
  * The SortedHeap class implements a sorted heap using a doubly linked list.
  * Each heap contains nodes with integer values, and provides various methods to manipulate the heap.
+ * A heap can optionally keep a skip-list index over its nodes, which makes insert expected O(log n).
  */
 public class SortedHeap extends Heap {
+    private static final int MAX_LEVEL = 32; // The maximum number of index levels
+    private static final int LOAD_BATCH_SIZE = 1 << 14; // The number of values read from a snapshot at once
+    private static final int STREAM_CHUNK_SIZE = 1 << 16; // The number of streamed values sorted at once
+
     private Node head; // Pointer to the head node of the heap
     private Node tail; // Pointer to the tail node of the heap
+    private long size; // The number of nodes in the heap
+    private NodeOwner owner; // The owner of the handles of the heap, replaced when the heap is rebuilt
+
+    private final boolean indexed; // Whether the heap keeps a skip-list index over its nodes
+    private Index header;  // Sentinel entry holding the first index entry of every level
+    private Index[] update; // The last entry before the searched value on every level, filled by search
+    private int level;     // The number of index levels in use
+    private int seed;      // State of the random generator that picks the index levels
+    private final NodePool pool; // The pool that recycles the nodes, or null to allocate every node
 
     /**
-     * Constructs an empty SortedHeap.
+     * An entry of the skip-list index.
+     * It points to a node of the list and to the next entry on each of its levels.
+     */
+    private static final class Index {
+        final Node node;
+        final Index[] next;
+
+        Index(Node node, int height) {
+            this.node = node;
+            this.next = new Index[height];
+        }
+    }
+
+    /**
+     * Constructs an empty SortedHeap without an index.
      */
     public SortedHeap() {
+        this(false, null);
+    }
+
+    /**
+     * Constructs an empty SortedHeap.
+     * An indexed heap uses extra memory for the skip-list entries (one entry per two nodes on average),
+     * in return for expected O(log n) insert.
+     *
+     * @param indexed whether the heap should keep a skip-list index over its nodes
+     */
+    public SortedHeap(boolean indexed) {
+        this(indexed, null);
+    }
+
+    /**
+     * Constructs an empty SortedHeap without an index that takes its nodes from a pool
+     * and returns them to it when they are removed.
+     *
+     * @param pool the node pool, or null to allocate every node
+     */
+    public SortedHeap(NodePool pool) {
+        this(false, pool);
+    }
+
+    /**
+     * Constructs an empty SortedHeap that takes its nodes from a pool and returns them to it when they are removed.
+     *
+     * @param indexed whether the heap should keep a skip-list index over its nodes
+     * @param pool the node pool, or null to allocate every node
+     */
+    public SortedHeap(boolean indexed, NodePool pool) {
         head = null;
         tail = null;
+        size = 0;
+        owner = new NodeOwner();
+        this.pool = pool;
+        this.indexed = indexed;
+        if (indexed) {
+            header = new Index(null, MAX_LEVEL);
+            update = new Index[MAX_LEVEL];
+            level = 0;
+            seed = ThreadLocalRandom.current().nextInt() | 1; // The generator state must not be zero
+        }
+    }
+
+    /**
+     * Returns whether the heap keeps a skip-list index over its nodes.
+     *
+     * @return true if the heap is indexed
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Returns the pool that recycles the nodes of the heap.
+     *
+     * @return the node pool, or null if the heap does not use one
+     */
+    public NodePool getPool() {
+        return pool;
+    }
+
+    /**
+     * Creates a node for a value, taking it from the pool if the heap has one.
+     *
+     * @param value the value to be stored in the node
+     * @return an unlinked node holding the value
+     */
+    private Node newNode(int value) {
+        return pool != null ? pool.acquire(value) : new Node(value);
     }
 
     /**
@@ -51,59 +159,315 @@ public class SortedHeap extends Heap {
     }
 
     /**
-     * Returns a string representation of the heap.
+     * Passes each value of the heap to an action, in ascending order, without removing it.
      *
-     * @return a string representation of the heap
+     * @param action the action to be performed on each value
+     */
+    @Override
+    public void forEachValue(IntConsumer action) {
+        for (Node ptr = head; ptr != null; ptr = ptr.getNext())
+            action.accept(ptr.getValue());
+    }
+
+    /**
+     * Deletes all nodes in the heap. Handles from before are no longer valid.
      */
-    public String toString() {
+    private void delHeap() {
+        owner = new NodeOwner(); // Invalidates every handle at once
         if (head == null)
-            return "[]";
+            return;
 
-        Node ptr = head.getNext();
-        String str = "[" + head.getValue(); // String representation of the heap
+        Node ptr = head;
         while (ptr != null) {
-            str += ", " + ptr.getValue(); // Appending values to the string
-            ptr = ptr.getNext();
+            Node tmp = ptr.getNext();
+            ptr.setNext(null);
+            if (tmp != null)
+                tmp.setPrev(null);
+            if (pool != null)
+                pool.release(ptr); // Recycling the node
+            ptr = tmp;
         }
-        str += "]";
 
-        return str; // Returning the string representation
+        head = null;
+        tail = null;
+        size = 0;
+        clearIndex();
     }
 
     /**
-     * Creates a copy of the current heap.
+     * Picks the number of index levels of a new entry.
+     * Each level is kept with probability 1/2, so half of the nodes are not indexed at all.
      *
-     * @return a copy of the current heap
+     * @return the number of levels, between 0 and MAX_LEVEL
      */
-    private SortedHeap copyHeap() {
-        SortedHeap heap = new SortedHeap();
+    private int randomLevel() {
+        int x = seed; // Xorshift random generator
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+        return Integer.numberOfTrailingZeros(~x); // The number of trailing one bits
+    }
 
-        Node ptr = head;
-        while (ptr != null) {
-            heap.insert(ptr.getValue()); // Inserting each value into the new heap
-            ptr = ptr.getNext();
+    /**
+     * Removes all the entries of the index.
+     */
+    private void clearIndex() {
+        if (!indexed)
+            return;
+
+        Arrays.fill(header.next, null);
+        level = 0;
+    }
+
+    /**
+     * Rebuilds the index from scratch over the current list of nodes.
+     */
+    private void rebuildIndex() {
+        if (!indexed)
+            return;
+
+        clearIndex();
+        Index[] last = update; // The last entry of every level so far
+        Arrays.fill(last, header);
+        for (Node ptr = head; ptr != null; ptr = ptr.getNext()) {
+            int height = randomLevel();
+            if (height == 0)
+                continue;
+
+            Index entry = new Index(ptr, height);
+            for (int i = 0; i < height; i++) { // Append the entry to each of its levels
+                last[i].next[i] = entry;
+                last[i] = entry;
+            }
+            if (height > level)
+                level = height;
         }
+    }
+
+    /**
+     * Adds an index entry for a node that has just been linked into the list.
+     * The position of the entry on every level is taken from the last call to search.
+     *
+     * @param node the new node
+     */
+    private void addIndex(Node node) {
+        int height = randomLevel();
+        if (height == 0)
+            return;
 
-        return heap; // Returning the copy of the heap
+        for (int i = level; i < height; i++) // New levels start at the header
+            update[i] = header;
+        if (height > level)
+            level = height;
+
+        Index entry = new Index(node, height);
+        for (int i = 0; i < height; i++) { // Link the entry after the last smaller entry of each level
+            entry.next[i] = update[i].next[i];
+            update[i].next[i] = entry;
+        }
     }
 
     /**
-     * Deletes all nodes in the heap.
+     * Removes the index entry of a node, if it has one. Must be called before the node is unlinked or changed.
+     * The entry is found by searching for the value of the node and then passing the entries with an equal value.
+     *
+     * @param node the node whose entry is removed
      */
-    private void delHeap() {
-        if (head == null)
+    private void removeIndex(Node node) {
+        if (!indexed)
             return;
 
-        Node ptr = head;
-        while (ptr.getNext() != null) {
-            Node tmp = ptr.getNext();
-            ptr.setNext(null);
-            tmp.setPrev(null);
-            ptr = tmp;
+        int value = node.getValue();
+        search(value); // Fills update with the last entry before the value on every level
+        for (int i = 0; i < level; i++) {
+            Index x = update[i];
+            while (x.next[i] != null && x.next[i].node != node && x.next[i].node.getValue() == value)
+                x = x.next[i];
+            if (x.next[i] != null && x.next[i].node == node) // The entry is on this level
+                x.next[i] = x.next[i].next[i];
         }
+        while (level > 0 && header.next[level - 1] == null) // Drop the levels that became empty
+            level--;
+    }
 
-        head = null;
-        tail = null;
+    /**
+     * Removes the index entry of the head node, if it has one.
+     * Must be called before the head node is unlinked.
+     */
+    private void removeHeadIndex() {
+        Index first = header.next[0];
+        if (first == null || first.node != head) // The head node is not indexed
+            return;
+
+        for (int i = 0; i < first.next.length; i++) // The entry is first on all of its levels
+            header.next[i] = first.next[i];
+        while (level > 0 && header.next[level - 1] == null) // Drop the levels that became empty
+            level--;
+    }
+
+    /**
+     * Merges a sorted list of nodes into this heap by relinking the existing nodes in one pass.
+     * Equal values keep the nodes of this heap first.
+     *
+     * @param otherHead the head of the sorted list to be merged
+     * @param otherTail the tail of the sorted list to be merged
+     */
+    private void mergeList(Node otherHead, Node otherTail) {
+        if (otherHead == null) // Nothing to merge
+            return;
+
+        if (head == null) { // If this heap is empty
+            head = otherHead;
+            tail = otherTail;
+            return;
+        }
+
+        Node newTail = otherTail.getValue() >= tail.getValue() ? otherTail : tail;
+        head = mergeLists(head, tail, otherHead, otherTail);
+        tail = newTail;
+    }
+
+    /**
+     * Merges two non-empty sorted lists of nodes by relinking the nodes in one pass.
+     * Equal values keep the nodes of the first list first, so the tail of the merged list is
+     * the tail of the second list if its value is greater than or equal to the other tail, and the tail of the first list otherwise.
+     *
+     * @param aHead the head of the first list
+     * @param aTail the tail of the first list
+     * @param bHead the head of the second list
+     * @param bTail the tail of the second list
+     * @return the head of the merged list
+     */
+    private static Node mergeLists(Node aHead, Node aTail, Node bHead, Node bTail) {
+        if (aTail.getValue() <= bHead.getValue()) { // The second list belongs after the first list
+            aTail.setNext(bHead);
+            bHead.setPrev(aTail);
+            return aHead;
+        }
+
+        if (bTail.getValue() < aHead.getValue()) { // The second list belongs before the first list
+            bTail.setNext(aHead);
+            aHead.setPrev(bTail);
+            return bHead;
+        }
+
+        Node ptr1 = aHead; // Pointer to traverse the first list
+        Node ptr2 = bHead; // Pointer to traverse the second list
+        Node newHead = null;
+        Node last = null; // The last node of the merged list so far
+
+        // Loop until reaching the end of either list
+        while (ptr1 != null && ptr2 != null) {
+            Node next;
+            if (ptr1.getValue() <= ptr2.getValue()) { // If value in the first list is smaller or equal
+                next = ptr1;
+                ptr1 = ptr1.getNext();
+            } else { // If value in the second list is smaller
+                next = ptr2;
+                ptr2 = ptr2.getNext();
+            }
+
+            if (last == null)
+                newHead = next;
+            else
+                last.setNext(next);
+            next.setPrev(last);
+            last = next;
+        }
+
+        // Link the remaining nodes of whichever list is left
+        Node rest = ptr1 != null ? ptr1 : ptr2;
+        last.setNext(rest);
+        rest.setPrev(last);
+
+        return newHead;
+    }
+
+    /**
+     * Builds sorted runs from a stream of values and merges them into a single list.
+     * Values are collected into a fixed-size chunk, and each full chunk is sorted and linked into a run of nodes.
+     * Runs are kept on a stack and merged as soon as a run is not longer than the one above it,
+     * so each node takes part in O(log n) merges and at most one chunk of raw values is held at a time.
+     */
+    private final class RunBuilder implements IntConsumer {
+        private final int[] chunk = new int[STREAM_CHUNK_SIZE];
+        private int count = 0; // The number of values in the chunk
+
+        private Node[] heads = new Node[8];   // The stack of runs
+        private Node[] tails = new Node[8];
+        private long[] lengths = new long[8];
+        private int runs = 0;
+
+        @Override
+        public void accept(int value) {
+            chunk[count++] = value;
+            if (count == chunk.length)
+                flushChunk();
+        }
+
+        /**
+         * Sorts the collected values, links them into a run and pushes it on the stack.
+         */
+        private void flushChunk() {
+            if (count == 0)
+                return;
+
+            ArrayUtils.mergeSort(chunk, 0, count);
+            Node first = newNode(chunk[0]);
+            Node last = first;
+            for (int i = 1; i < count; i++) {
+                Node tmp = newNode(chunk[i]);
+                last.setNext(tmp);
+                tmp.setPrev(last);
+                last = tmp;
+            }
+
+            if (runs == heads.length) {
+                heads = Arrays.copyOf(heads, runs * 2);
+                tails = Arrays.copyOf(tails, runs * 2);
+                lengths = Arrays.copyOf(lengths, runs * 2);
+            }
+            heads[runs] = first;
+            tails[runs] = last;
+            lengths[runs] = count;
+            runs++;
+            count = 0;
+
+            collapse(false);
+        }
+
+        /**
+         * Merges the two topmost runs while the lower one is not longer than the upper one, or until one run is left.
+         *
+         * @param all whether to merge all the runs
+         */
+        private void collapse(boolean all) {
+            while (runs > 1 && (all || lengths[runs - 2] <= lengths[runs - 1])) {
+                int a = runs - 2, b = runs - 1;
+                Node newTail = tails[b].getValue() >= tails[a].getValue() ? tails[b] : tails[a];
+                heads[a] = mergeLists(heads[a], tails[a], heads[b], tails[b]);
+                tails[a] = newTail;
+                lengths[a] += lengths[b];
+                heads[b] = null;
+                tails[b] = null;
+                runs--;
+            }
+        }
+
+        /**
+         * Merges all the runs and makes the result the contents of the heap.
+         */
+        void finish() {
+            flushChunk();
+            collapse(true);
+            if (runs == 1) {
+                head = heads[0];
+                tail = tails[0];
+                size = lengths[0];
+            }
+            rebuildIndex();
+        }
     }
 
     /**
@@ -114,29 +478,156 @@ public class SortedHeap extends Heap {
      */
     private Node search(int value) {
         Node ptr = head;
+        long steps = 0; // The number of entries and nodes passed, for the metrics
+        if (indexed) { // Skip ahead through the index
+            Index x = header;
+            for (int i = level - 1; i >= 0; i--) {
+                while (x.next[i] != null && x.next[i].node.getValue() < value) {
+                    x = x.next[i];
+                    steps++;
+                }
+                update[i] = x; // Remember where the search went down a level
+            }
+            if (x != header)
+                ptr = x.node;
+        }
+
         // Loop until the end of the heap or a value greater than or equal to the specified value is found
-        while (ptr != null && ptr.getValue() < value)
+        while (ptr != null && ptr.getValue() < value) {
             ptr = ptr.getNext();
+            steps++;
+        }
 
+        recordWork(steps + level + 1, steps); // Every step and every stop is a comparison
         return ptr;
     }
 
     /**
      * Inserts a new value into the heap in a sorted order.
+     * Takes O(n) time, or expected O(log n) time if the heap is indexed.
      *
      * @param value the value to be inserted
      */
     @Override
     public void insert(int value) {
-        Node node = new Node(value); // Creating a new node with the specified value
+        insertHandle(value);
+    }
+
+    /**
+     * Inserts a new value into the heap in a sorted order and returns its node as a handle.
+     * Takes O(n) time, or expected O(log n) time if the heap is indexed.
+     *
+     * @param value the value to be inserted
+     * @return the node holding the value
+     */
+    @Override
+    public HeapHandle insertHandle(int value) {
+        Node node = newNode(value); // Creating a new node with the specified value
+        node.setOwner(owner);
+        linkSorted(node);
+        if (indexed)
+            addIndex(node);
+        return node;
+    }
+
+    /**
+     * Lowers the value of a node and moves it to its new sorted position.
+     * Without an index, the node walks back from where it was, so a small decrease is cheap;
+     * with an index, it is unlinked and inserted again in expected O(log n) time.
+     *
+     * @param handle the node, as returned by insertHandle
+     * @param newValue the new value, which must not be greater than the current one
+     * @throws IllegalArgumentException if the new value is greater than the current one,
+     *                                  or the handle does not belong to an element of this heap
+     */
+    @Override
+    public void decreaseKey(HeapHandle handle, int newValue) {
+        Node node = nodeOf(handle, owner);
+        checkDecrease(node, newValue);
+        if (indexed) {
+            removeIndex(node);
+            detach(node);
+            node.setValue(newValue);
+            size--; // Counted again by linkSorted
+            linkSorted(node);
+            addIndex(node);
+            return;
+        }
 
+        Node pos = node.getPrev();
+        node.setValue(newValue);
+        if (pos == null || pos.getValue() <= newValue) // Still in order
+            return;
+
+        detach(node);
+        while (pos != null && pos.getValue() > newValue) // Walk back to the last node not greater than the new value
+            pos = pos.getPrev();
+
+        if (pos == null) { // The node becomes the head
+            node.setNext(head);
+            head.setPrev(node);
+            head = node;
+        } else {
+            Node next = pos.getNext(); // Not null, since the node came from further back
+            pos.setNext(node);
+            node.setPrev(pos);
+            node.setNext(next);
+            next.setPrev(node);
+        }
+    }
+
+    /**
+     * Removes a node from the heap.
+     * Takes constant time, plus expected O(log n) time to remove its index entry if the heap is indexed.
+     *
+     * @param handle the node, as returned by insertHandle
+     * @throws IllegalArgumentException if the handle does not belong to an element of this heap
+     */
+    @Override
+    public void delete(HeapHandle handle) {
+        Node node = nodeOf(handle, owner);
+        removeIndex(node);
+        detach(node);
+        node.setOwner(null); // The node is no longer a valid handle
+        size--;
+        if (pool != null)
+            pool.release(node); // Recycling the removed node
+    }
+
+    /**
+     * Unlinks a node from the list, keeping it for reuse by the caller. The size is not updated.
+     *
+     * @param node the node to be unlinked
+     */
+    private void detach(Node node) {
+        Node prev = node.getPrev();
+        Node next = node.getNext();
+        if (prev == null)
+            head = next;
+        else
+            prev.setNext(next);
+        if (next == null)
+            tail = prev;
+        else
+            next.setPrev(prev);
+        node.setPrev(null);
+        node.setNext(null);
+    }
+
+    /**
+     * Links a node into the list at its sorted position.
+     *
+     * @param node the node to be linked
+     */
+    private void linkSorted(Node node) {
+        size++;
         if (head == null) { // If the heap is empty
             head = node;
             tail = node;
             return;
         }
 
-        Node indicator = search(value); // Finding the position to insert the new value
+        Node indicator = search(node.getValue()); // Finding the position to insert the new value
         if (indicator == null) { // If the new value is greater than all existing values
             tail.setNext(node);
             node.setPrev(tail);
@@ -160,22 +651,113 @@ public class SortedHeap extends Heap {
 
     /**
      * Builds a heap from an array of integers, sorting the array first.
+     * Large arrays are sorted in parallel, and then linked into nodes in parallel parts that are concatenated,
+     * unless the heap has a node pool, which is not thread-safe.
      *
      * @param arr the array of integers
      */
     @Override
     public void makeHeap(int[] arr) {
         delHeap(); // Clearing the existing heap
+        if (arr.length == 0)
+            return;
         ArrayUtils.mergeSort(arr); // Sorting the array
 
-        head = new Node(arr[0]);
-        Node ptr1 = head;
-        for (int i = 1; i < arr.length; i++) { // Looping through the array to create nodes and link them
-            Node tmp = new Node(arr[i]);
-            ptr1.setNext(tmp);
-            tmp.setPrev(ptr1);
-            ptr1 = tmp;
+        if (pool == null && buildInParallel(arr.length)) {
+            LinkTask list = ForkJoinPool.commonPool().invoke(new LinkTask(arr, 0, arr.length));
+            head = list.first; // The minimum is the first node, as the array is sorted
+            tail = list.last;
+        } else {
+            head = newNode(arr[0]);
+            Node ptr1 = head;
+            for (int i = 1; i < arr.length; i++) { // Looping through the array to create nodes and link them
+                Node tmp = newNode(arr[i]);
+                ptr1.setNext(tmp);
+                tmp.setPrev(ptr1);
+                ptr1 = tmp;
+            }
+            tail = ptr1;
         }
+        size = arr.length;
+        rebuildIndex();
+    }
+
+    /**
+     * Builds a heap from a stream of integers.
+     * The values are sorted in chunks, and the sorted runs are merged incrementally,
+     * so the stream is never held in memory as a whole.
+     *
+     * @param values the stream of integers
+     */
+    @Override
+    public void makeHeap(IntStream values) {
+        delHeap(); // Clearing the existing heap
+        RunBuilder builder = new RunBuilder();
+        values.sequential().forEachOrdered(builder);
+        builder.finish();
+    }
+
+    /**
+     * Builds a heap from whitespace-separated integers read from a channel, in the format of fileToArray.
+     * The values are sorted in chunks as they are parsed, and the sorted runs are merged incrementally.
+     *
+     * @param channel the channel to read from
+     * @throws IOException if the channel cannot be read
+     */
+    @Override
+    public void makeHeap(ReadableByteChannel channel) throws IOException {
+        delHeap(); // Clearing the existing heap
+        RunBuilder builder = new RunBuilder();
+        ArrayUtils.readInts(channel, builder);
+        builder.finish();
+    }
+
+    /**
+     * Inserts a batch of values into the heap.
+     * The batch is sorted, linked into a run of nodes and merged into the heap in a single walk.
+     * An indexed heap inserts a batch that is small compared to the heap one value at a time instead.
+     *
+     * @param values the array holding the values to be inserted
+     * @param off the index of the first value in the array
+     * @param len the number of values to be inserted
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of the array
+     */
+    @Override
+    public void insertAll(int[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        if (len == 0)
+            return;
+
+        if (indexed && (long) len * 32 < size) { // Searching the index is cheaper than walking the whole list
+            for (int i = off; i < off + len; i++)
+                insert(values[i]);
+            return;
+        }
+
+        int[] batch = Arrays.copyOfRange(values, off, off + len);
+        ArrayUtils.mergeSort(batch);
+        Node first = newNode(batch[0]);
+        Node last = first;
+        for (int i = 1; i < len; i++) { // Link the sorted batch
+            Node tmp = newNode(batch[i]);
+            last.setNext(tmp);
+            tmp.setPrev(last);
+            last = tmp;
+        }
+
+        mergeList(first, last);
+        size += len;
+        rebuildIndex();
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return the number of elements in the heap
+     */
+    @Override
+    public long size() {
+        return size;
     }
 
     /**
@@ -201,77 +783,195 @@ public class SortedHeap extends Heap {
             return Integer.MAX_VALUE;
 
         int minVal = head.getValue();
+        if (indexed)
+            removeHeadIndex();
 
+        Node tmp = head;
         head = head.getNext();
-        if (head == null) { // If the heap becomes empty after removing the minimum value
+        if (head == null) // If the heap becomes empty after removing the minimum value
             tail = null;
-            return minVal;
-        }
-
-        Node tmp = head.getPrev();
+        else
+            head.setPrev(null);
         tmp.setNext(null);
-        head.setPrev(null);
+        tmp.setOwner(null); // The node is no longer a valid handle
+        size--;
+
+        if (pool != null)
+            pool.release(tmp); // Recycling the removed node
 
         return minVal;
     }
 
     /**
-     * Merges the current heap with another heap into this heap.
+     * Removes the k smallest values from the heap, in ascending order.
+     * They are the first k nodes of the list, so this takes O(k) time.
+     *
+     * @param dest the array to receive the values, starting at index 0
+     * @param k the number of values to be extracted
+     * @return the number of values extracted, which is less than k if the heap holds fewer values
+     * @throws IndexOutOfBoundsException if k is negative or greater than the length of the array
+     */
+    @Override
+    public int drainMin(int[] dest, int k) {
+        Objects.checkFromIndexSize(0, k, dest.length);
+        int n = (int) Math.min(k, size);
+        for (int i = 0; i < n; i++) // Each removal only unlinks the head
+            dest[i] = extractMin();
+        return n;
+    }
+
+    /**
+     * Merges the current heap with another sorted heap into this heap.
+     * The nodes of both heaps are relinked in a single pass, in O(n + m) time and without allocation,
+     * and the handles of the other heap become handles of this heap. At the end, the other heap is empty.
      *
-     * @param other the other heap to be merged
+     * @param heap the other heap to be merged
+     * @throws IllegalArgumentException if the other heap is not a SortedHeap
      */
     @Override
-    public void unionHeap(SortedHeap other) {
-        SortedHeap unionHeap = new SortedHeap();
-        Node ptr1 = head; // Pointer to traverse the current heap
-        Node ptr2 = other.getHead(); // Pointer to traverse the other heap
+    public void unionHeap(Heap heap) {
+        if (!(heap instanceof SortedHeap))
+            throw new IllegalArgumentException("Cannot union a SortedHeap with a " + heap.getClass().getSimpleName());
 
-        // Loop until reaching the end of either heap
-        while (ptr1 != null && ptr2 != null) {
-            if (ptr1.getValue() < ptr2.getValue()) { // If value in current heap is smaller
-                unionHeap.insert(ptr1.getValue());
-                ptr1 = ptr1.getNext();
-            } else { // If value in other heap is smaller or equal
-                unionHeap.insert(ptr2.getValue());
-                ptr2 = ptr2.getNext();
-            }
+        SortedHeap other = (SortedHeap) heap;
+        if (other == this)
+            return;
+
+        Node otherHead = other.head;
+        Node otherTail = other.tail;
+        size += other.size;
+        // The other heap no longer owns its nodes
+        other.owner.mergeInto(owner);
+        other.owner = new NodeOwner();
+        other.head = null;
+        other.tail = null;
+        other.size = 0;
+        other.clearIndex();
+
+        mergeList(otherHead, otherTail);
+        rebuildIndex();
+    }
+
+    /**
+     * Merges several SortedHeaps into this heap at once, by relinking their nodes in one pass.
+     * A LoserTree picks the next node among this heap and the others, so merging k heaps with n nodes in total
+     * takes O(n * log k), where chaining unionHeap would take O(n * k).
+     * Equal values keep the nodes of this heap first, then those of the other heaps in iteration order.
+     * The handles of the other heaps become handles of this heap. At the end, the other heaps are empty.
+     *
+     * @param heaps the heaps to be merged into this heap
+     */
+    public void mergeAll(Collection<SortedHeap> heaps) {
+        Node[] cursors = new Node[heaps.size() + 1]; // The next node of each non-empty list
+        Node[] tails = new Node[cursors.length];
+        int k = 0;
+        if (head != null) {
+            cursors[k] = head;
+            tails[k++] = tail;
         }
 
-        // Add remaining nodes from current heap
-        while (ptr1 != null) {
-            unionHeap.insert(ptr1.getValue());
-            ptr1 = ptr1.getNext();
+        for (SortedHeap other : heaps) {
+            if (other == this || other.head == null) // A heap listed twice is empty the second time
+                continue;
+
+            cursors[k] = other.head;
+            tails[k++] = other.tail;
+            size += other.size;
+            // The other heap no longer owns its nodes
+            other.owner.mergeInto(owner);
+            other.owner = new NodeOwner();
+            other.head = null;
+            other.tail = null;
+            other.size = 0;
+            other.clearIndex();
         }
 
-        // Add remaining nodes from other heap
-        while (ptr2 != null) {
-            unionHeap.insert(ptr2.getValue());
-            ptr2 = ptr2.getNext();
+        if (k <= 1) { // Nothing to merge
+            head = k == 1 ? cursors[0] : null;
+            tail = k == 1 ? tails[0] : null;
+            rebuildIndex();
+            return;
         }
 
-        // Clearing both heaps
-        delHeap();
-        other.delHeap();
+        LoserTree tree = new LoserTree(k);
+        for (int i = 0; i < k; i++)
+            tree.init(i, cursors[i].getValue());
+        tree.build();
+
+        Node newHead = null;
+        Node last = null; // The last node of the merged list so far
+        while (!tree.isEmpty()) {
+            int source = tree.winner();
+            Node next = cursors[source];
+            Node rest = next.getNext();
+            cursors[source] = rest;
+            if (rest == null)
+                tree.removeWinner();
+            else
+                tree.replaceWinner(rest.getValue());
+
+            if (last == null)
+                newHead = next;
+            else
+                last.setNext(next);
+            next.setPrev(last);
+            last = next;
+        }
 
-        // Copy the union heap into this heap
-        head = unionHeap.head;
-        tail = unionHeap.tail;
+        head = newHead;
+        tail = last; // The last node of some list, so its next pointer is already null
+        rebuildIndex();
     }
 
     /**
-     * Prints the heap in sorted order.
-     * At the end, the heap is empty.
+     * Saves the heap to a binary snapshot file.
+     *
+     * @param path the path of the snapshot file, which is replaced if it exists
+     * @throws IOException if the file cannot be written
      */
-    @Override
-    public void sortHeap() {
-        if (head == null) { // If the heap is empty
-            System.out.println("[]");
-            return;
-        }
+    public void save(Path path) throws IOException {
+        HeapSnapshot.write(path, HeapSnapshot.KIND_SORTED_HEAP, true, head);
+    }
 
-        System.out.print("[" + extractMin());
-        while (head != null) // Loop until the heap is empty
-            System.out.print(", " + extractMin());
-        System.out.println("]");
+    /**
+     * Replaces the contents of the heap with the values of a binary snapshot file saved by a SortedHeap.
+     * The values of a sorted snapshot are linked in the order they are read, with no sorting.
+     * A snapshot without the sorted flag is read into an array and built with makeHeap.
+     *
+     * @param path the path of the snapshot file
+     * @throws IOException if the file cannot be read, or is not a valid snapshot of a SortedHeap
+     */
+    public void load(Path path) throws IOException {
+        try (HeapSnapshot snapshot = HeapSnapshot.open(path, HeapSnapshot.KIND_SORTED_HEAP)) {
+            if (!snapshot.isSorted()) { // The values have to be sorted
+                if (snapshot.getCount() > Integer.MAX_VALUE - 8)
+                    throw new IOException("Snapshot too large to sort in memory: " + path);
+                int[] arr = new int[(int) snapshot.getCount()];
+                snapshot.read(arr, 0, arr.length);
+                makeHeap(arr);
+                return;
+            }
+
+            delHeap();
+            int[] batch = new int[LOAD_BATCH_SIZE];
+            int n;
+            while ((n = snapshot.read(batch, 0, batch.length)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    Node node = newNode(batch[i]);
+                    if (tail == null || tail.getValue() <= node.getValue()) { // Append in order
+                        node.setPrev(tail);
+                        if (tail == null)
+                            head = node;
+                        else
+                            tail.setNext(node);
+                        tail = node;
+                        size++;
+                    } else { // Out of order in a damaged snapshot, so insert at the right position
+                        linkSorted(node);
+                    }
+                }
+            }
+            rebuildIndex();
+        }
     }
 }
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The GenerateKeyHeaps class generates the keyed heap variants in src from templates/KeyHeap.java.template,
+ * so that they cannot drift apart. Run it from the root of the project after changing the template:
+ * <pre>
+ * java tools/GenerateKeyHeaps.java
+ * </pre>
+ * Each ${Name} in the template is replaced by the value for the variant.
+ * A line holding only a placeholder whose value is empty is removed.
+ */
+public class GenerateKeyHeaps {
+    private static final Path TEMPLATE = Path.of("templates", "KeyHeap.java.template");
+    private static final Path OUTPUT_DIR = Path.of("src");
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{(\\w+)\\}");
+    private static final Pattern EMPTY_LINE = Pattern.compile("(?m)^[ \\t]*\\$\\{(\\w+)\\}[ \\t]*\\r?\\n");
+
+    /**
+     * Generates every variant.
+     *
+     * @param args not used
+     * @throws IOException if the template cannot be read or a variant cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        String template = Files.readString(TEMPLATE, StandardCharsets.UTF_8);
+
+        generate(template, primitive("LongKeyHeap", "long", "a < b", "Long.MAX_VALUE"));
+        generate(template, primitive("DoubleKeyHeap", "double", "Double.compare(a, b) < 0", "Double.POSITIVE_INFINITY"));
+
+        Map<String, String> comparable = new LinkedHashMap<>();
+        comparable.put("ClassName", "ComparableKeyHeap");
+        comparable.put("TypeParams", "<K extends Comparable<? super K>, V>");
+        comparable.put("TypeParamsStatic", "<K extends Comparable<? super K>> ");
+        comparable.put("TypeParamDocs", " * @param <K> the type of the keys\n * @param <V> the type of the payloads");
+        comparable.put("Key", "K");
+        comparable.put("KeyDoc", "Comparable");
+        comparable.put("BoxingDoc", "no entry object is allocated per element");
+        comparable.put("NewKeys", "(K[]) new Comparable<?>[capacity]");
+        comparable.put("Less", "a.compareTo(b) < 0");
+        comparable.put("EmptyKey", "null");
+        comparable.put("EmptyKeyDoc", "null");
+        comparable.put("ObjectsImport", "import java.util.Objects;");
+        comparable.put("CheckKey", "        Objects.requireNonNull(key, \"key\");");
+        comparable.put("CheckKeys", "        for (K key : keys)\n            Objects.requireNonNull(key, \"key\");");
+        comparable.put("ClearKeySlot", "        keys[last] = null;");
+        comparable.put("ClearKeys", "        Arrays.fill(keys, 0, size, null);");
+        generate(template, comparable);
+    }
+
+    /**
+     * Returns the values of a variant with primitive keys.
+     *
+     * @param className the name of the class
+     * @param key the primitive type of the keys
+     * @param less the expression telling whether key a is smaller than key b
+     * @param emptyKey the key returned by getMinKey on an empty heap
+     * @return the value of every placeholder
+     */
+    private static Map<String, String> primitive(String className, String key, String less, String emptyKey) {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("ClassName", className);
+        values.put("TypeParams", "<V>");
+        values.put("TypeParamsStatic", "");
+        values.put("TypeParamDocs", " * @param <V> the type of the payloads");
+        values.put("Key", key);
+        values.put("KeyDoc", key);
+        values.put("BoxingDoc", "no key is ever boxed");
+        values.put("NewKeys", "new " + key + "[capacity]");
+        values.put("Less", less);
+        values.put("EmptyKey", emptyKey);
+        values.put("EmptyKeyDoc", emptyKey);
+        values.put("ObjectsImport", "");
+        values.put("CheckKey", "");
+        values.put("CheckKeys", "");
+        values.put("ClearKeySlot", "");
+        values.put("ClearKeys", "");
+        return values;
+    }
+
+    /**
+     * Fills in the template for one variant and writes it to src, keeping the line endings of the template.
+     *
+     * @param template the text of the template
+     * @param values the value of every placeholder
+     * @throws IOException if the variant cannot be written
+     * @throws IllegalArgumentException if the template uses a placeholder that has no value
+     */
+    private static void generate(String template, Map<String, String> values) throws IOException {
+        String newline = template.contains("\r\n") ? "\r\n" : "\n";
+        Map<String, String> all = new LinkedHashMap<>(values);
+        all.put("Header", "// Generated by tools/GenerateKeyHeaps.java from templates/KeyHeap.java.template. Do not edit.");
+
+        // Remove the lines of placeholders that are empty for this variant
+        Matcher empty = EMPTY_LINE.matcher(template);
+        StringBuilder text = new StringBuilder();
+        while (empty.find())
+            empty.appendReplacement(text, value(all, empty.group(1)).isEmpty() ? "" : Matcher.quoteReplacement(empty.group()));
+        empty.appendTail(text);
+
+        Matcher placeholder = PLACEHOLDER.matcher(text.toString());
+        StringBuilder out = new StringBuilder();
+        while (placeholder.find()) {
+            String value = value(all, placeholder.group(1)).replace("\n", newline);
+            placeholder.appendReplacement(out, Matcher.quoteReplacement(value));
+        }
+        placeholder.appendTail(out);
+
+        Path file = OUTPUT_DIR.resolve(values.get("ClassName") + ".java");
+        Files.writeString(file, out, StandardCharsets.UTF_8);
+        System.out.println("Generated " + file);
+    }
+
+    /**
+     * Returns the value of a placeholder.
+     *
+     * @param values the value of every placeholder
+     * @param name the name of the placeholder
+     * @return its value
+     * @throws IllegalArgumentException if the placeholder has no value
+     */
+    private static String value(Map<String, String> values, String name) {
+        String value = values.get(name);
+        if (value == null)
+            throw new IllegalArgumentException("No value for ${" + name + "} in " + TEMPLATE);
+        return value;
+    }
+}